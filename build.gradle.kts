@@ -1,6 +1,7 @@
 plugins {
     id("java-library")
     id("maven-publish")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 val snapshot = true
@@ -40,6 +41,14 @@ tasks {
     }
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    resultFormat.set("JSON")
+    // e.g. ./gradlew jmh -PjmhIncludes=SchemaBenchmark.generateWarm
+    (project.findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+}
+
 publishing {
     publications {
         create<MavenPublication>("jitpack") {
@@ -0,0 +1,73 @@
+package dev.snowz.ormlitemigrator.processor;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.VariableElement;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns an {@link AnnotationMirror} into an instance of the annotation interface, so that compile-time
+ * annotations can be fed to the same rendering code that runs on reflected annotations.
+ * Class-valued members cannot be loaded at compile time and always report their default.
+ */
+final class AnnotationProxy {
+
+    private AnnotationProxy() {
+    }
+
+    static <A extends Annotation> A of(final Class<A> annotationType, final AnnotationMirror mirror) {
+        final Map<String, Object> values = new HashMap<>();
+        mirror.getElementValues().forEach((element, value) -> values.put(element.getSimpleName().toString(), value));
+
+        final Object proxy = Proxy.newProxyInstance(
+            annotationType.getClassLoader(),
+            new Class<?>[]{annotationType},
+            (self, method, args) -> {
+                switch (method.getName()) {
+                    case "annotationType":
+                        return annotationType;
+                    case "toString":
+                        return "@" + annotationType.getName() + values;
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        return value(method, (AnnotationValue) values.get(method.getName()));
+                }
+            });
+
+        return annotationType.cast(proxy);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object value(final Method method, final AnnotationValue annotationValue) {
+        if (annotationValue == null) {
+            return method.getDefaultValue();
+        }
+
+        final Object value = annotationValue.getValue();
+        final Class<?> returnType = method.getReturnType();
+
+        if (returnType.isEnum() && value instanceof VariableElement) {
+            return Enum.valueOf((Class<? extends Enum>) returnType, ((VariableElement) value).getSimpleName().toString());
+        }
+        if (returnType == Class.class) {
+            return method.getDefaultValue();
+        }
+        return value;
+    }
+
+    static AnnotationMirror find(final Iterable<? extends AnnotationMirror> mirrors, final Class<? extends Annotation> annotationType) {
+        for (final AnnotationMirror mirror : mirrors) {
+            if (mirror.getAnnotationType().toString().equals(annotationType.getCanonicalName())) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,321 @@
+package dev.snowz.ormlitemigrator.processor;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import dev.snowz.ormlitemigrator.CompiledModel;
+import dev.snowz.ormlitemigrator.Database;
+import dev.snowz.ormlitemigrator.IncomingDatabaseFieldType;
+import dev.snowz.ormlitemigrator.Indexes;
+import dev.snowz.ormlitemigrator.ModelColumn;
+import dev.snowz.ormlitemigrator.PrecompiledModels;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Finds {@code @DatabaseTable} classes at compile time and generates a {@link PrecompiledModels} registry with
+ * their columns and per-database CREATE TABLE and index statements already rendered, registered as a service
+ * so {@code SchemaInterpreter.precompiledModels()} can load it without reflection.
+ * <p>
+ * The generated class defaults to {@code OrmliteMigratorModels} in the package of the first model, and can
+ * be named with {@code -Aormlitemigrator.registryClass=com.example.Models}.
+ */
+@SupportedAnnotationTypes("com.j256.ormlite.table.DatabaseTable")
+@SupportedOptions(ModelRegistryProcessor.REGISTRY_CLASS_OPTION)
+public class ModelRegistryProcessor extends AbstractProcessor {
+
+    static final String REGISTRY_CLASS_OPTION = "ormlitemigrator.registryClass";
+    private static final String DEFAULT_REGISTRY_CLASS = "OrmliteMigratorModels";
+
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (generated || roundEnv.processingOver()) {
+            return false;
+        }
+
+        final List<TypeElement> candidates = new ArrayList<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(DatabaseTable.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                candidates.add((TypeElement) element);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        candidates.sort(Comparator.comparing(m -> m.getQualifiedName().toString()));
+        final String registryClass = registryClass(candidates.get(0));
+        final String registryPackage = registryClass.lastIndexOf('.') > 0 ? registryClass.substring(0, registryClass.lastIndexOf('.')) : "";
+
+        final List<TypeElement> models = new ArrayList<>();
+        for (final TypeElement candidate : candidates) {
+            if (accessible(candidate, registryPackage)) {
+                models.add(candidate);
+            } else {
+                warn(candidate, "model class is not accessible from " + registryClass + ", skipping; make it public to precompile it");
+            }
+        }
+
+        if (models.isEmpty()) {
+            return false;
+        }
+
+        final Map<TypeElement, CompiledModel> compiled = new LinkedHashMap<>();
+        for (final TypeElement model : models) {
+            final CompiledModel compiledModel = compile(model);
+            if (compiledModel != null) {
+                compiled.put(model, compiledModel);
+            }
+        }
+
+        try {
+            writeRegistry(registryClass, models, compiled);
+            writeServiceFile(registryClass, models);
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "could not write " + registryClass + ": " + e.getMessage());
+        }
+
+        generated = true;
+        return false;
+    }
+
+    private CompiledModel compile(final TypeElement model) {
+        final String tableName = tableName(model);
+
+        final List<IncomingDatabaseFieldType> fields = new ArrayList<>();
+        final List<String> foreignTables = new ArrayList<>();
+        for (final Element member : model.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            final AnnotationMirror mirror = AnnotationProxy.find(member.getAnnotationMirrors(), DatabaseField.class);
+            if (mirror == null) {
+                continue;
+            }
+            final DatabaseField databaseField = AnnotationProxy.of(DatabaseField.class, mirror);
+            fields.add(new IncomingDatabaseFieldType(
+                member.getSimpleName().toString(),
+                databaseField,
+                fieldClass(member.asType())
+            ));
+            if (databaseField.foreign() && member.asType().getKind() == TypeKind.DECLARED) {
+                foreignTables.add(tableName((TypeElement) ((DeclaredType) member.asType()).asElement()));
+            }
+        }
+
+        if (fields.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@DatabaseTable class has no @DatabaseField members", model);
+            return null;
+        }
+
+        // the model class itself is not loadable while it is being compiled, it is referenced by name in the source
+        return CompiledModel.of(null, tableName, fields, foreignTables);
+    }
+
+    /**
+     * Whether the generated registry can name the class: the class and every class enclosing it must be public, or
+     * at least not private and in the registry's package.
+     */
+    private boolean accessible(final TypeElement model, final String registryPackage) {
+        final boolean samePackage = processingEnv.getElementUtils().getPackageOf(model).getQualifiedName().contentEquals(registryPackage);
+        for (Element element = model; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            final Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || !modifiers.contains(Modifier.PUBLIC) && !samePackage) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String tableName(final TypeElement model) {
+        final AnnotationMirror mirror = AnnotationProxy.find(model.getAnnotationMirrors(), DatabaseTable.class);
+        final String tableName = mirror == null ? "" : AnnotationProxy.of(DatabaseTable.class, mirror).tableName();
+        return tableName.isEmpty() ? model.getSimpleName().toString() : tableName;
+    }
+
+    /**
+     * The rendering code only distinguishes a handful of JDK types, everything else renders like an unknown class.
+     */
+    private static Class<?> fieldClass(final TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return boolean.class;
+            case INT:
+                return int.class;
+            case LONG:
+                return long.class;
+            case SHORT:
+                return short.class;
+            case BYTE:
+                return byte.class;
+            case DOUBLE:
+                return double.class;
+            case FLOAT:
+                return float.class;
+            case CHAR:
+                return char.class;
+            default:
+                break;
+        }
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            final String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            if (name.startsWith("java.")) {
+                try {
+                    return Class.forName(name);
+                } catch (final ClassNotFoundException e) {
+                    return Object.class;
+                }
+            }
+        }
+        return Object.class;
+    }
+
+    private String registryClass(final TypeElement firstModel) {
+        final String option = processingEnv.getOptions().get(REGISTRY_CLASS_OPTION);
+        if (option != null && !option.isEmpty()) {
+            return option;
+        }
+        final String packageName = processingEnv.getElementUtils().getPackageOf(firstModel).getQualifiedName().toString();
+        return packageName.isEmpty() ? DEFAULT_REGISTRY_CLASS : packageName + "." + DEFAULT_REGISTRY_CLASS;
+    }
+
+    private void writeRegistry(final String registryClass, final List<TypeElement> models, final Map<TypeElement, CompiledModel> compiled) throws IOException {
+        final int lastDot = registryClass.lastIndexOf('.');
+        final String packageName = lastDot > 0 ? registryClass.substring(0, lastDot) : "";
+        final String simpleName = registryClass.substring(lastDot + 1);
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(registryClass, models.toArray(new Element[0]));
+        try (final Writer out = file.openWriter()) {
+            if (!packageName.isEmpty()) {
+                out.write("package " + packageName + ";\n\n");
+            }
+            out.write("import dev.snowz.ormlitemigrator.CompiledModel;\n");
+            out.write("import dev.snowz.ormlitemigrator.Database;\n");
+            out.write("import dev.snowz.ormlitemigrator.Indexes;\n");
+            out.write("import dev.snowz.ormlitemigrator.ModelColumn;\n");
+            out.write("import dev.snowz.ormlitemigrator.PrecompiledModels;\n\n");
+            out.write("import java.util.*;\n\n");
+            out.write("@javax.annotation.processing.Generated(\"" + ModelRegistryProcessor.class.getName() + "\")\n");
+            out.write("public final class " + simpleName + " implements PrecompiledModels {\n\n");
+
+            out.write("    @Override\n");
+            out.write("    public List<CompiledModel> models() {\n");
+            out.write("        final List<CompiledModel> models = new ArrayList<>();\n");
+            for (final Map.Entry<TypeElement, CompiledModel> model : compiled.entrySet()) {
+                writeModel(out, model.getKey(), model.getValue());
+            }
+            out.write("        return models;\n");
+            out.write("    }\n\n");
+
+            out.write("    private static <T> Map<Database.Type, T> byType(final Object... values) {\n");
+            out.write("        final Map<Database.Type, T> map = new EnumMap<>(Database.Type.class);\n");
+            out.write("        for (int i = 0; i < values.length; i += 2) {\n");
+            out.write("            @SuppressWarnings(\"unchecked\") final T value = (T) values[i + 1];\n");
+            out.write("            map.put((Database.Type) values[i], value);\n");
+            out.write("        }\n");
+            out.write("        return map;\n");
+            out.write("    }\n\n");
+
+            out.write("    private static Indexes index(final String name, final boolean unique, final String... columns) {\n");
+            out.write("        final Indexes index = new Indexes(name);\n");
+            out.write("        index.setUnique(unique);\n");
+            out.write("        index.getColumns().addAll(Arrays.asList(columns));\n");
+            out.write("        return index;\n");
+            out.write("    }\n");
+            out.write("}\n");
+        }
+    }
+
+    private void writeModel(final Writer out, final TypeElement element, final CompiledModel model) throws IOException {
+        out.write("        models.add(new CompiledModel(\n");
+        out.write("            " + element.getQualifiedName() + ".class,\n");
+        out.write("            " + literal(model.getTableName()) + ",\n");
+        out.write("            List.of(\n");
+        final List<ModelColumn> columns = model.getColumns();
+        for (int c = 0; c < columns.size(); c++) {
+            final ModelColumn column = columns.get(c);
+            out.write("                new ModelColumn(" + literal(column.getFieldName()) + ", " + column.isNullable() + ", " + column.isId() + ", " + column.isGeneratedId() + ", "
+                + byType(type -> literal(column.getDefinition(type))) + ", "
+                + byType(type -> literal(column.getNullableDefinition(type))) + ", "
+                + byType(type -> literal(column.getBackfillValue(type))) + ")" + (c < columns.size() - 1 ? "," : "") + "\n");
+        }
+        out.write("            ),\n");
+        out.write("            " + byType(type -> literal(model.getCreateStatement(type))) + ",\n");
+        final StringJoiner indexes = new StringJoiner(", ", "List.of(", ")");
+        for (final Indexes index : model.getIndexes()) {
+            final StringJoiner arguments = new StringJoiner(", ", "index(", ")");
+            arguments.add(literal(index.getName())).add(String.valueOf(Boolean.TRUE.equals(index.getUnique())));
+            index.getColumns().forEach(column -> arguments.add(literal(column)));
+            indexes.add(arguments.toString());
+        }
+        out.write("            " + indexes + ",\n");
+        final StringJoiner foreignTables = new StringJoiner(", ", "List.of(", ")");
+        model.getForeignTables().forEach(table -> foreignTables.add(literal(table)));
+        out.write("            " + foreignTables + "\n");
+        out.write("        ));\n");
+    }
+
+    private static String byType(final Function<Database.Type, String> value) {
+        final StringJoiner joiner = new StringJoiner(", ", "byType(", ")");
+        for (final Database.Type type : Database.Type.values()) {
+            joiner.add("Database.Type." + type.name()).add(value.apply(type));
+        }
+        return joiner.toString();
+    }
+
+    private void writeServiceFile(final String registryClass, final List<TypeElement> models) throws IOException {
+        final FileObject file = processingEnv.getFiler().createResource(
+            StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + PrecompiledModels.class.getName(), models.toArray(new Element[0]));
+        try (final Writer out = file.openWriter()) {
+            out.write(registryClass + "\n");
+        }
+    }
+
+    private static String literal(final String value) {
+        if (value == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void warn(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+}
@@ -0,0 +1,117 @@
+package dev.snowz.ormlitemigrator.processor;
+
+import dev.snowz.ormlitemigrator.CompiledModel;
+import dev.snowz.ormlitemigrator.Database;
+import dev.snowz.ormlitemigrator.ModelColumn;
+import dev.snowz.ormlitemigrator.ModelRegistry;
+import dev.snowz.ormlitemigrator.PrecompiledModels;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the processor through the system Java compiler over sample models and checks the generated registry against
+ * the models {@link ModelRegistry} compiles by reflection.
+ */
+public class ModelRegistryProcessorTest {
+
+    private static final String ACCOUNT = "package sample;\n" +
+        "import com.j256.ormlite.field.DatabaseField;\n" +
+        "import com.j256.ormlite.table.DatabaseTable;\n" +
+        "@DatabaseTable(tableName = \"accounts\")\n" +
+        "public class Account {\n" +
+        "    @DatabaseField(generatedId = true) private int id;\n" +
+        "    @DatabaseField(index = true) private String name;\n" +
+        "    @DatabaseField(canBeNull = false) private boolean active;\n" +
+        "    @DatabaseField(uniqueIndexName = \"accounts_email_idx\") private String email;\n" +
+        "}\n";
+
+    // package-private, but in the registry's package
+    private static final String LEDGER = "package sample;\n" +
+        "import com.j256.ormlite.field.DatabaseField;\n" +
+        "import com.j256.ormlite.table.DatabaseTable;\n" +
+        "@DatabaseTable(tableName = \"ledgers\")\n" +
+        "class Ledger {\n" +
+        "    @DatabaseField(id = true) private int id;\n" +
+        "    @DatabaseField private String currency;\n" +
+        "}\n";
+
+    // package-private in another package, the registry cannot name it
+    private static final String HIDDEN = "package sample.internal;\n" +
+        "import com.j256.ormlite.field.DatabaseField;\n" +
+        "import com.j256.ormlite.table.DatabaseTable;\n" +
+        "@DatabaseTable(tableName = \"hidden\")\n" +
+        "class Hidden {\n" +
+        "    @DatabaseField(generatedId = true) private int id;\n" +
+        "}\n";
+
+    @Test
+    public void testGeneratedRegistryMatchesReflection() throws Throwable {
+        final Path directory = Files.createTempDirectory("ormlite-migrator-processor");
+        final Path sources = directory.resolve("src");
+        final Path classes = Files.createDirectories(directory.resolve("classes"));
+        final List<Path> files = List.of(
+            write(sources, "sample/Account.java", ACCOUNT),
+            write(sources, "sample/Ledger.java", LEDGER),
+            write(sources, "sample/internal/Hidden.java", HIDDEN)
+        );
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                List.of("-classpath", System.getProperty("java.class.path"), "-d", classes.toString(),
+                    "-A" + ModelRegistryProcessor.REGISTRY_CLASS_OPTION + "=sample.Models"),
+                null, fileManager.getJavaFileObjectsFromPaths(files));
+            task.setProcessors(List.of(new ModelRegistryProcessor()));
+            // the generated registry is compiled in the same run, so this also checks that it compiles
+            assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        }
+
+        assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.WARNING
+            && d.getMessage(Locale.ROOT).contains("not accessible")));
+        assertEquals("sample.Models", Files.readString(classes.resolve("META-INF/services/" + PrecompiledModels.class.getName())).trim());
+
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            final PrecompiledModels registry = (PrecompiledModels) loader.loadClass("sample.Models").getDeclaredConstructor().newInstance();
+            final List<CompiledModel> models = registry.models();
+            assertEquals(List.of("sample.Account", "sample.Ledger"), models.stream().map(m -> m.getModelClass().getName()).collect(Collectors.toList()));
+
+            for (final CompiledModel precompiled : models) {
+                assertEquals(describe(ModelRegistry.get(precompiled.getModelClass())), describe(precompiled));
+            }
+        }
+    }
+
+    private static Path write(final Path sources, final String name, final String source) throws IOException {
+        final Path file = sources.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, source);
+    }
+
+    private static String describe(final CompiledModel model) {
+        final StringBuilder description = new StringBuilder(model.getTableName());
+        description.append('\n').append(model.getIndexStatements()).append('\n').append(model.getForeignTables());
+        for (final Database.Type type : Database.Type.values()) {
+            description.append('\n').append(type).append(": ").append(model.getCreateStatement(type));
+            for (final ModelColumn column : model.getColumns()) {
+                description.append("\n  ").append(column.getFieldName())
+                    .append(' ').append(column.isNullable()).append(' ').append(column.isId()).append(' ').append(column.isGeneratedId())
+                    .append(' ').append(column.getDefinition(type))
+                    .append(" | ").append(column.getNullableDefinition(type))
+                    .append(" | ").append(column.getBackfillValue(type));
+            }
+        }
+        return description.toString();
+    }
+}
@@ -3,3 +3,4 @@ plugins {
 }
 
 rootProject.name = "ormlite-migrator"
+include("processor")
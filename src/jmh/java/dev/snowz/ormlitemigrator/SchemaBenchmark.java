@@ -0,0 +1,180 @@
+package dev.snowz.ormlitemigrator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures the hot paths on synthetic schemas of 10 to 10,000 tables: rendering a script against an empty
+ * database (cold) and against a database that is already up to date (warm), reading the schema per table and in
+ * bulk, and applying a full migration. H2 runs in memory in each compatibility mode the migrator targets, SQLite
+ * runs on a file. The models are compiled once per trial, so every benchmark, cold ones included, leaves model
+ * compilation out and measures introspection, planning and rendering only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchemaBenchmark {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    public enum Backend {
+        H2(Database.Type.H2, ""),
+        H2_MYSQL(Database.Type.MySQL, ";MODE=MySQL"),
+        H2_MARIADB(Database.Type.MariaDB, ";MODE=MariaDB"),
+        H2_POSTGRESQL(Database.Type.Postgres, ";MODE=PostgreSQL"),
+        SQLITE(Database.Type.SqlLite, null);
+
+        private final Database.Type type;
+        private final String h2Mode;
+
+        Backend(final Database.Type type, final String h2Mode) {
+            this.type = type;
+            this.h2Mode = h2Mode;
+        }
+
+        Database open(final Path directory) throws SQLException {
+            final String connectionString = h2Mode == null
+                ? "jdbc:sqlite:" + directory.resolve("bench_" + DATABASES.incrementAndGet() + ".db")
+                : "jdbc:h2:mem:bench_" + DATABASES.incrementAndGet() + h2Mode + ";DB_CLOSE_DELAY=-1";
+            final Connection connection = DriverManager.getConnection(connectionString);
+            return new Database(type, h2Mode == null ? Database.SQLiteDriver : Database.H2Driver, connection, connectionString);
+        }
+
+        void close(final Database database) throws SQLException {
+            if (h2Mode != null) {
+                try (final Statement stmt = database.getConnection().createStatement()) {
+                    // DB_CLOSE_DELAY keeps in-memory databases alive after the connection closes
+                    stmt.execute("SHUTDOWN");
+                }
+            }
+            database.getConnection().close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Schema {
+        @Param({"10", "100", "1000", "10000"})
+        int tables;
+
+        @Param({"H2", "H2_MYSQL", "H2_MARIADB", "H2_POSTGRESQL", "SQLITE"})
+        Backend backend;
+
+        List<CompiledModel> models;
+        List<String> tableNames;
+        Path directory;
+        Database empty;
+        Database migrated;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            models = SyntheticSchema.models(tables);
+            tableNames = SyntheticSchema.tableNames(models);
+            directory = Files.createTempDirectory("ormlite-migrator-bench");
+            empty = backend.open(directory);
+            migrated = backend.open(directory);
+            interpreter(migrated, models).bulkIntrospection(true).migrate();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException, IOException {
+            backend.close(empty);
+            backend.close(migrated);
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * A fresh, empty database for every invocation of {@link #migrate}.
+     */
+    @State(Scope.Thread)
+    public static class Target {
+        Database database;
+
+        @Setup(Level.Invocation)
+        public void setUp(final Schema schema) throws SQLException {
+            database = schema.backend.open(schema.directory);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown(final Schema schema) throws SQLException {
+            schema.backend.close(database);
+        }
+    }
+
+    /**
+     * Cold as in an empty database: the models are the trial's precompiled ones, like after
+     * {@link ModelRegistry#register} or on a second run in the same JVM.
+     */
+    @Benchmark
+    public String generateCold(final Schema schema) throws Throwable {
+        return interpreter(schema.empty, schema.models).bulkIntrospection(true).generate();
+    }
+
+    @Benchmark
+    public String generateWarm(final Schema schema) throws Throwable {
+        return interpreter(schema.migrated, schema.models).bulkIntrospection(true).generate();
+    }
+
+    @Benchmark
+    public String generateWarmPerTable(final Schema schema) throws Throwable {
+        return interpreter(schema.migrated, schema.models).generate();
+    }
+
+    @Benchmark
+    public SchemaSnapshot introspectBulk(final Schema schema) throws SQLException {
+        try (final SchemaIntrospector introspector = new SchemaIntrospector(schema.backend.type, schema.migrated.getConnection())) {
+            return introspector.snapshot(schema.tableNames);
+        }
+    }
+
+    @Benchmark
+    public List<Object> introspectPerTable(final Schema schema) throws SQLException {
+        try (final SchemaIntrospector introspector = new SchemaIntrospector(schema.backend.type, schema.migrated.getConnection())) {
+            final List<Object> found = new ArrayList<>(schema.tableNames.size() * 2);
+            for (final String tableName : schema.tableNames) {
+                found.add(introspector.getSchema(tableName));
+                found.add(introspector.getIndexes(tableName));
+            }
+            return found;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public MigrationResult migrate(final Schema schema, final Target target) throws Throwable {
+        return interpreter(target.database, schema.models).bulkIntrospection(true).migrate();
+    }
+
+    private static SchemaInterpreter interpreter(final Database database, final List<CompiledModel> models) {
+        final SchemaInterpreter interpreter = new SchemaInterpreter(database);
+        for (final CompiledModel model : models) {
+            interpreter.model(model);
+        }
+        return interpreter;
+    }
+
+    private static void deleteDirectory(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
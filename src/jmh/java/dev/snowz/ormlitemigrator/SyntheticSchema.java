@@ -0,0 +1,82 @@
+package dev.snowz.ormlitemigrator;
+
+import com.j256.ormlite.field.DatabaseField;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Builds any number of distinct tables from one annotated template, so benchmarks do not need a model class per
+ * table. Every table gets the template's columns and an index of its own.
+ */
+final class SyntheticSchema {
+
+    @SuppressWarnings("unused")
+    private static final class Template {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(canBeNull = false)
+        private String name;
+
+        @DatabaseField
+        private String email;
+
+        @DatabaseField
+        private int counter;
+
+        @DatabaseField
+        private boolean active;
+
+        @DatabaseField
+        private Date createdAt;
+    }
+
+    private static final List<IncomingDatabaseFieldType> FIELDS = fields();
+
+    private SyntheticSchema() {
+    }
+
+    static List<CompiledModel> models(final int tables) {
+        final List<CompiledModel> models = new ArrayList<>(tables);
+        for (int i = 0; i < tables; i++) {
+            models.add(model(String.format("bench_%05d", i)));
+        }
+        return models;
+    }
+
+    static List<String> tableNames(final List<CompiledModel> models) {
+        final List<String> tableNames = new ArrayList<>(models.size());
+        for (final CompiledModel model : models) {
+            tableNames.add(model.getTableName());
+        }
+        return tableNames;
+    }
+
+    private static CompiledModel model(final String tableName) {
+        final CompiledModel template = CompiledModel.of(Template.class, tableName, FIELDS);
+
+        final Map<Database.Type, String> createStatements = new EnumMap<>(Database.Type.class);
+        for (final Database.Type type : Database.Type.values()) {
+            createStatements.put(type, template.getCreateStatement(type));
+        }
+
+        // index names are global to the schema, so they carry the table name
+        final Indexes index = new Indexes(tableName + "_name_idx");
+        index.setUnique(false);
+        index.getColumns().add("name");
+
+        return new CompiledModel(Template.class, tableName, template.getColumns(), createStatements, List.of(index));
+    }
+
+    private static List<IncomingDatabaseFieldType> fields() {
+        final List<IncomingDatabaseFieldType> fields = new ArrayList<>();
+        for (final Field field : Template.class.getDeclaredFields()) {
+            final DatabaseField databaseField = field.getAnnotation(DatabaseField.class);
+            if (databaseField != null) {
+                fields.add(new IncomingDatabaseFieldType(field.getName(), databaseField, field.getType()));
+            }
+        }
+        return fields;
+    }
+}
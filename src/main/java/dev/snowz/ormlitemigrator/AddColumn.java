@@ -0,0 +1,38 @@
+package dev.snowz.ormlitemigrator;
+
+public class AddColumn extends MigrationOperation {
+
+    private final String columnName;
+    private final String definition;
+    private final boolean backfilled;
+
+    /**
+     * @param definition the rendered column definition, without NOT NULL when the column is backfilled afterwards
+     */
+    public AddColumn(final String tableName, final String columnName, final String definition, final boolean backfilled) {
+        super(tableName);
+        this.columnName = columnName;
+        this.definition = definition;
+        this.backfilled = backfilled;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * True when the column is added as nullable and filled by a {@link ColumnBackfill}.
+     */
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    @Override
+    public String toString() {
+        return "AddColumn{" + getTableName() + "." + definition + "}";
+    }
+}
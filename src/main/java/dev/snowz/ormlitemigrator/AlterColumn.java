@@ -0,0 +1,72 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * Changes the type or the nullability of an existing column.
+ */
+public class AlterColumn extends MigrationOperation {
+
+    private final String columnName;
+    private final String fromType;
+    private final String toType;
+    private final Boolean nullable;
+    private final String definition;
+    private final String fillValue;
+
+    /**
+     * @param fromType   the type the database reports for the column
+     * @param toType     the new column type, or null when the type does not change
+     * @param nullable   the new nullability, or null when it does not change
+     * @param definition the full column definition of the model
+     * @param fillValue  the SQL literal existing NULLs are replaced with before NOT NULL is added, or null
+     */
+    public AlterColumn(final String tableName, final String columnName, final String fromType, final String toType, final Boolean nullable,
+                       final String definition, final String fillValue) {
+        super(tableName);
+        this.columnName = columnName;
+        this.fromType = fromType;
+        this.toType = toType;
+        this.nullable = nullable;
+        this.definition = definition;
+        this.fillValue = fillValue;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public String getFromType() {
+        return fromType;
+    }
+
+    public String getToType() {
+        return toType;
+    }
+
+    public boolean isTypeChanged() {
+        return toType != null;
+    }
+
+    public boolean isNullabilityChanged() {
+        return nullable != null;
+    }
+
+    /**
+     * True when the column becomes NOT NULL, which has to check every row.
+     */
+    public boolean isTightened() {
+        return Boolean.FALSE.equals(nullable);
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public String getFillValue() {
+        return fillValue;
+    }
+
+    @Override
+    public String toString() {
+        return "AlterColumn{" + getTableName() + "." + columnName + " " + fromType + " -> " + definition + "}";
+    }
+}
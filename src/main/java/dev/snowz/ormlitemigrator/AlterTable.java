@@ -0,0 +1,167 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the changes to one existing table and renders them with as few ALTER TABLE statements as the
+ * dialect allows. Every ALTER on MySQL/MariaDB can rebuild the table, so there all columns and indexes go
+ * into a single statement. Postgres merges column additions and column changes, H2 merges column additions, and
+ * SQLite needs one statement per column.
+ * Indexes that changed are dropped before they are created again.
+ * <p>
+ * In online mode MySQL/MariaDB statements ask for {@code ALGORITHM=INSTANT} or {@code ALGORITHM=INPLACE, LOCK=NONE}
+ * and fall back step by step to a plain ALTER, and Postgres builds indexes with {@code CREATE INDEX CONCURRENTLY}.
+ */
+class AlterTable {
+
+    static final String INSTANT = "ALGORITHM=INSTANT";
+    static final String INPLACE = "ALGORITHM=INPLACE, LOCK=NONE";
+    static final String DEFAULT = "ALGORITHM=DEFAULT";
+    static final String CONCURRENTLY = "CONCURRENTLY";
+
+    private final Database.Type type;
+    private final String tableName;
+    private final boolean online;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Indexes> indexes = new ArrayList<>();
+    private final List<String> droppedIndexes = new ArrayList<>();
+    private final List<AlterColumn> alteredColumns = new ArrayList<>();
+
+    AlterTable(final Database.Type type, final String tableName, final boolean online) {
+        this.type = type;
+        this.tableName = tableName;
+        this.online = online;
+    }
+
+    AlterTable addColumn(final String definition) {
+        columns.add(definition);
+        return this;
+    }
+
+    AlterTable addIndex(final Indexes index) {
+        indexes.add(index);
+        return this;
+    }
+
+    AlterTable dropIndex(final String name) {
+        droppedIndexes.add(name);
+        return this;
+    }
+
+    AlterTable alterColumn(final AlterColumn column) {
+        alteredColumns.add(column);
+        return this;
+    }
+
+    boolean isEmpty() {
+        return columns.isEmpty() && indexes.isEmpty() && droppedIndexes.isEmpty() && alteredColumns.isEmpty();
+    }
+
+    List<MigrationStatement> statements() {
+        final List<MigrationStatement> statements = new ArrayList<>();
+
+        if (type == Database.Type.MySQL || type == Database.Type.MariaDB) {
+            statements.addAll(fillNulls());
+            final List<String> clauses = new ArrayList<>();
+            droppedIndexes.forEach(i -> clauses.add("DROP INDEX " + i));
+            columns.forEach(c -> clauses.add("ADD COLUMN " + c));
+            alteredColumns.forEach(c -> clauses.add("MODIFY COLUMN " + c.getDefinition()));
+            indexes.forEach(i -> clauses.add("ADD " + (Boolean.TRUE.equals(i.getUnique()) ? "UNIQUE " : "") + "INDEX " + i.getName() + " (" + String.join(",", i.getColumns()) + ")"));
+            if (!clauses.isEmpty()) {
+                statements.add(mysqlAlter("ALTER TABLE " + tableName + " " + String.join(", ", clauses)));
+            }
+            return statements;
+        }
+
+        if (columns.size() > 1 && type == Database.Type.Postgres) {
+            final List<String> clauses = new ArrayList<>();
+            columns.forEach(c -> clauses.add("ADD COLUMN " + c));
+            statements.add(new MigrationStatement("ALTER TABLE " + tableName + " " + String.join(", ", clauses)));
+        } else if (columns.size() > 1 && type == Database.Type.H2) {
+            statements.add(new MigrationStatement("ALTER TABLE " + tableName + " ADD (" + String.join(", ", columns) + ")"));
+        } else {
+            columns.forEach(c -> statements.add(new MigrationStatement("ALTER TABLE " + tableName + " ADD COLUMN " + c)));
+        }
+
+        statements.addAll(fillNulls());
+        final List<String> alterClauses = new ArrayList<>();
+        for (final AlterColumn c : alteredColumns) {
+            if (c.isTypeChanged()) {
+                // Postgres only converts between type families when told how
+                final boolean cast = type == Database.Type.Postgres
+                    && ColumnType.parse(c.getFromType(), null).getFamily() != ColumnType.parse(c.getToType(), null).getFamily();
+                alterClauses.add("ALTER COLUMN " + c.getColumnName() + " SET DATA TYPE " + c.getToType() + (cast ? " USING " + c.getColumnName() + "::" + c.getToType() : ""));
+            }
+            if (c.isNullabilityChanged()) {
+                alterClauses.add("ALTER COLUMN " + c.getColumnName() + (c.isTightened() ? " SET NOT NULL" : " DROP NOT NULL"));
+            }
+        }
+        if (type == Database.Type.Postgres && !alterClauses.isEmpty()) {
+            statements.add(new MigrationStatement("ALTER TABLE " + tableName + " " + String.join(", ", alterClauses)));
+        } else {
+            alterClauses.forEach(c -> statements.add(new MigrationStatement("ALTER TABLE " + tableName + " " + c)));
+        }
+
+        for (final String i : droppedIndexes) {
+            if (online && type == Database.Type.Postgres) {
+                statements.add(new MigrationStatement("DROP INDEX CONCURRENTLY " + i, CONCURRENTLY, null, true));
+            } else {
+                statements.add(new MigrationStatement("DROP INDEX " + i));
+            }
+        }
+
+        for (final Indexes i : indexes) {
+            if (online && type == Database.Type.Postgres) {
+                // cannot run inside a transaction block, the executor runs it on its own
+                final String unique = Boolean.TRUE.equals(i.getUnique()) ? "UNIQUE " : "";
+                statements.add(new MigrationStatement("CREATE " + unique + "INDEX CONCURRENTLY " + i.getName() + " ON " + tableName + "(" + String.join(",", i.getColumns()) + ")", CONCURRENTLY, null, true));
+            } else {
+                statements.add(new MigrationStatement(Table.createIndexStatement(i, tableName)));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Replaces the NULLs of the columns about to become NOT NULL, which would otherwise reject the change.
+     */
+    private List<MigrationStatement> fillNulls() {
+        final List<MigrationStatement> statements = new ArrayList<>();
+        for (final AlterColumn c : alteredColumns) {
+            if (c.isTightened() && c.getFillValue() != null) {
+                statements.add(new MigrationStatement("UPDATE " + tableName + " SET " + c.getColumnName() + " = " + c.getFillValue() + " WHERE " + c.getColumnName() + " IS NULL"));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Adds the NOT NULL constraint to a column that was added as nullable and has been backfilled since.
+     */
+    MigrationStatement setNotNull(final String columnName, final String definition) {
+        if (type == Database.Type.MySQL || type == Database.Type.MariaDB) {
+            final String modify = "ALTER TABLE " + tableName + " MODIFY COLUMN " + definition;
+            if (!online) {
+                return new MigrationStatement(modify);
+            }
+            // tightening rebuilds the table, but INPLACE keeps it writable while it does
+            return new MigrationStatement(modify + ", " + INPLACE, INPLACE, new MigrationStatement(modify, DEFAULT, null, false), false);
+        }
+        return new MigrationStatement("ALTER TABLE " + tableName + " ALTER COLUMN " + columnName + " SET NOT NULL");
+    }
+
+    private MigrationStatement mysqlAlter(final String alter) {
+        if (!online) {
+            return new MigrationStatement(alter);
+        }
+
+        final MigrationStatement plain = new MigrationStatement(alter, DEFAULT, null, false);
+        final MigrationStatement inplace = new MigrationStatement(alter + ", " + INPLACE, INPLACE, plain, false);
+        if (!indexes.isEmpty() || !droppedIndexes.isEmpty() || !alteredColumns.isEmpty()) {
+            // building an index or changing a column is never instant
+            return inplace;
+        }
+        return new MigrationStatement(alter + ", " + INSTANT, INSTANT, inplace, false);
+    }
+}
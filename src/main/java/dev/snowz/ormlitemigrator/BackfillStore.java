@@ -0,0 +1,94 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps one row per backfill that has not finished yet, with the last key that was filled, so an interrupted
+ * backfill continues where it stopped on the next migration instead of leaving a nullable column behind.
+ */
+class BackfillStore {
+    private static final Logger logger = LoggerFactory.getLogger(BackfillStore.class.getSimpleName());
+
+    static final String TABLE_NAME = "ormlite_migrator_backfill";
+
+    private final Connection connection;
+
+    BackfillStore(final Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return the unfinished backfills as {@code TABLE.COLUMN} (upper case) to the last key filled, which is
+     * null when no chunk has completed yet
+     */
+    Map<String, String> pending() {
+        final Map<String, String> pending = new HashMap<>();
+        try (final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery("SELECT table_name, column_name, last_key FROM " + TABLE_NAME)) {
+            while (rs.next()) {
+                pending.put(key(rs.getString("table_name"), rs.getString("column_name")), rs.getString("last_key"));
+            }
+        } catch (final SQLException e) {
+            // the table does not exist before the first backfill
+            logger.debug("no pending backfills - {}", e.getMessage());
+        }
+        return pending;
+    }
+
+    void register(final ColumnBackfill backfill) throws SQLException {
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "table_name VARCHAR(128) NOT NULL, " +
+                "column_name VARCHAR(128) NOT NULL, " +
+                "last_key VARCHAR(255), " +
+                "updated_at BIGINT NOT NULL, " +
+                "PRIMARY KEY(table_name, column_name))");
+        }
+
+        if (pending().containsKey(key(backfill.getTableName(), backfill.getColumnName()))) {
+            return;
+        }
+
+        final String insert = "INSERT INTO " + TABLE_NAME + " (table_name, column_name, last_key, updated_at) VALUES (?, ?, NULL, ?)";
+        try (final PreparedStatement stmt = connection.prepareStatement(insert)) {
+            stmt.setString(1, backfill.getTableName());
+            stmt.setString(2, backfill.getColumnName());
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+
+    void checkpoint(final ColumnBackfill backfill, final Object lastKey) throws SQLException {
+        final String update = "UPDATE " + TABLE_NAME + " SET last_key = ?, updated_at = ? WHERE table_name = ? AND column_name = ?";
+        try (final PreparedStatement stmt = connection.prepareStatement(update)) {
+            stmt.setString(1, lastKey == null ? null : lastKey.toString());
+            stmt.setLong(2, System.currentTimeMillis());
+            stmt.setString(3, backfill.getTableName());
+            stmt.setString(4, backfill.getColumnName());
+            stmt.executeUpdate();
+        }
+    }
+
+    void complete(final ColumnBackfill backfill) throws SQLException {
+        final String delete = "DELETE FROM " + TABLE_NAME + " WHERE table_name = ? AND column_name = ?";
+        try (final PreparedStatement stmt = connection.prepareStatement(delete)) {
+            stmt.setString(1, backfill.getTableName());
+            stmt.setString(2, backfill.getColumnName());
+            stmt.executeUpdate();
+        }
+    }
+
+    static String key(final String tableName, final String columnName) {
+        return (tableName + "." + columnName).toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,169 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs {@link ColumnBackfill}s: fills the new column chunk by chunk in key order, committing and recording
+ * the last key after every chunk and pausing between chunks, then tightens the column to NOT NULL.
+ * A backfill that fails keeps its checkpoint and resumes on the next migration.
+ */
+class Backfiller {
+    private static final Logger logger = LoggerFactory.getLogger(Backfiller.class.getSimpleName());
+
+    private final Connection connection;
+    private final MigrationExecutor executor;
+    private final int chunkSize;
+    private final Duration pause;
+    private final MigrationListener listener;
+
+    Backfiller(final Connection connection, final MigrationExecutor executor, final int chunkSize, final Duration pause, final MigrationListener listener) {
+        this.connection = connection;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.listener = listener;
+    }
+
+    void run(final List<ColumnBackfill> backfills, final Map<String, String> checkpoints, final MigrationResult result) throws SQLException {
+        final BackfillStore store = new BackfillStore(connection);
+        final boolean autoCommit = connection.getAutoCommit();
+        // every chunk commits on its own, so no transaction spans the whole table
+        connection.setAutoCommit(true);
+
+        try {
+            for (final ColumnBackfill backfill : backfills) {
+                try {
+                    fill(backfill, store, checkpoints.get(BackfillStore.key(backfill.getTableName(), backfill.getColumnName())), result);
+                } catch (final SQLException e) {
+                    logger.error("backfill of {} stopped, it resumes on the next migration - {}", backfill, e.getMessage());
+                    final StatementFailure failure = new StatementFailure(backfill.getTableName(), backfill.update(), e);
+                    result.addFailure(failure);
+                    listener.statementFailed(failure);
+                    continue;
+                }
+
+                final int failures = result.getFailures().size();
+                executor.executeSingle(backfill.getTighten(), result);
+                if (result.getFailures().size() == failures) {
+                    store.complete(backfill);
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void fill(final ColumnBackfill backfill, final BackfillStore store, final String checkpoint, final MigrationResult result) throws SQLException {
+        final String name = backfill.getTableName() + "." + backfill.getColumnName();
+
+        if (backfill.getKeyColumn() == null) {
+            logger.warn("{} has no id column, filling {} in a single statement", backfill.getTableName(), backfill.getColumnName());
+            try (final PreparedStatement stmt = connection.prepareStatement(backfill.update())) {
+                final int rows = stmt.executeUpdate();
+                result.rowsBackfilled(name, rows);
+                listener.rowsExamined(backfill.getTableName(), rows);
+            }
+            return;
+        }
+
+        final String key = backfill.getKeyColumn();
+        final String table = backfill.getTableName();
+        final String nextBound = "SELECT MAX(" + key + ") FROM (SELECT " + key + " FROM " + table + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?) chunk";
+        final String firstBound = "SELECT MAX(" + key + ") FROM (SELECT " + key + " FROM " + table + " ORDER BY " + key + " LIMIT ?) chunk";
+        final String update = backfill.update() + " AND " + key + " > ? AND " + key + " <= ?";
+        final String firstUpdate = backfill.update() + " AND " + key + " <= ?";
+
+        Object lastKey = checkpoint == null ? null : key(checkpoint, table, key);
+        if (lastKey != null) {
+            logger.info("resuming backfill of {} after {} = {}", name, key, lastKey);
+        }
+
+        while (true) {
+            final Object upperKey;
+            try (final PreparedStatement stmt = connection.prepareStatement(lastKey == null ? firstBound : nextBound)) {
+                int parameter = 1;
+                if (lastKey != null) {
+                    stmt.setObject(parameter++, lastKey);
+                }
+                stmt.setInt(parameter, chunkSize);
+                try (final ResultSet rs = stmt.executeQuery()) {
+                    upperKey = rs.next() ? rs.getObject(1) : null;
+                }
+            }
+
+            if (upperKey == null) {
+                break;
+            }
+
+            try (final PreparedStatement stmt = connection.prepareStatement(lastKey == null ? firstUpdate : update)) {
+                int parameter = 1;
+                if (lastKey != null) {
+                    stmt.setObject(parameter++, lastKey);
+                }
+                stmt.setObject(parameter, upperKey);
+                final int rows = stmt.executeUpdate();
+                result.rowsBackfilled(name, rows);
+                listener.rowsExamined(backfill.getTableName(), rows);
+            }
+
+            store.checkpoint(backfill, upperKey);
+            lastKey = upperKey;
+            logger.info("backfilled {} rows of {} up to {} = {}", result.getBackfilledRows().get(name), name, key, upperKey);
+
+            sleep();
+        }
+    }
+
+    private void sleep() throws SQLException {
+        if (pause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while backfilling", e);
+        }
+    }
+
+    /**
+     * Checkpoints are stored as text, so they are bound back as the type the key column returns. Guessing from
+     * the text would compare a VARCHAR key like {@code 007} as the number 7.
+     */
+    private Object key(final String checkpoint, final String table, final String key) throws SQLException {
+        final Object sample;
+        try (final PreparedStatement stmt = connection.prepareStatement("SELECT MIN(" + key + ") FROM " + table);
+             final ResultSet rs = stmt.executeQuery()) {
+            sample = rs.next() ? rs.getObject(1) : null;
+        }
+
+        if (sample instanceof BigDecimal) {
+            return new BigDecimal(checkpoint);
+        }
+        if (sample instanceof BigInteger) {
+            return new BigInteger(checkpoint);
+        }
+        if (sample instanceof Double || sample instanceof Float) {
+            return Double.valueOf(checkpoint);
+        }
+        if (sample instanceof Number) {
+            return Long.valueOf(checkpoint);
+        }
+        if (sample instanceof UUID) {
+            return UUID.fromString(checkpoint);
+        }
+        return checkpoint;
+    }
+}
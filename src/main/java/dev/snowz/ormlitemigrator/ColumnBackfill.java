@@ -0,0 +1,61 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * Fills a NOT NULL column that was just added as nullable, then tightens the constraint. Rows are updated in
+ * keyset-paginated chunks on the key column, so no statement holds locks on more than one chunk of the table.
+ */
+public class ColumnBackfill {
+
+    private final String tableName;
+    private final String columnName;
+    private final String keyColumn;
+    private final String value;
+    private final MigrationStatement tighten;
+
+    public ColumnBackfill(final String tableName, final String columnName, final String keyColumn, final String value, final MigrationStatement tighten) {
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.keyColumn = keyColumn;
+        this.value = value;
+        this.tighten = tighten;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * The column the chunks are paginated on, or null when the table has no id column and is filled with
+     * a single UPDATE.
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * The SQL literal written to the existing rows.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * The statement that adds the NOT NULL constraint once every row has a value.
+     */
+    public MigrationStatement getTighten() {
+        return tighten;
+    }
+
+    String update() {
+        return "UPDATE " + tableName + " SET " + columnName + " = " + value + " WHERE " + columnName + " IS NULL";
+    }
+
+    @Override
+    public String toString() {
+        return tableName + "." + columnName + " = " + value;
+    }
+}
@@ -0,0 +1,85 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Compares the columns of a model with the columns of its table as the database reports them. The live columns are
+ * indexed by their upper-cased name once, so every lookup is constant time however wide the table is.
+ */
+class ColumnDiff {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnDiff.class.getSimpleName());
+
+    private final Map<String, DatabaseFieldType> live = new LinkedHashMap<>();
+
+    ColumnDiff(final List<DatabaseFieldType> liveColumns) {
+        for (final DatabaseFieldType field : liveColumns) {
+            live.putIfAbsent(key(field.getFieldName()), field);
+        }
+    }
+
+    DatabaseFieldType get(final String columnName) {
+        return live.get(key(columnName));
+    }
+
+    /**
+     * The model columns the table does not have yet, in model order.
+     */
+    List<ModelColumn> missing(final List<ModelColumn> columns) {
+        final List<ModelColumn> missing = new ArrayList<>();
+        for (final ModelColumn column : columns) {
+            if (!live.containsKey(key(column.getFieldName()))) {
+                missing.add(column);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * The change that brings an existing column in line with the model, or null when it already is. A change of
+     * type family, a longer character column and a changed nullability are reported; a shorter character column
+     * could truncate values and is only logged. Key columns are left alone.
+     */
+    AlterColumn changed(final String tableName, final ModelColumn column, final Database.Type type) {
+        final DatabaseFieldType found = get(column.getFieldName());
+        if (found == null || column.isId() || column.isGeneratedId()) {
+            return null;
+        }
+
+        final String sqlType = column.getSqlType(type);
+        final ColumnType from = ColumnType.of(found);
+        final ColumnType to = ColumnType.parse(sqlType, null);
+
+        boolean typeChanged = false;
+        if (from.isComparable() && to.isComparable() && !from.sameAs(to)) {
+            if (from.getFamily() != to.getFamily() || from.widensTo(to)) {
+                typeChanged = true;
+            } else {
+                logger.warn("{}.{} is {} in the database, not narrowing it to {} as values could be truncated", tableName, column.getFieldName(), found.getType(), sqlType);
+            }
+        }
+
+        final boolean nullabilityChanged = found.getNullable() != null && found.getNullable() != column.isNullable();
+        if (!typeChanged && !nullabilityChanged) {
+            return null;
+        }
+
+        logger.info("column {}.{} changed from {}{} to {}", tableName, column.getFieldName(), found.getType(),
+            Boolean.FALSE.equals(found.getNullable()) ? " NOT NULL" : "", column.getDefinition(type));
+        return new AlterColumn(
+            tableName,
+            column.getFieldName(),
+            found.getType(),
+            typeChanged ? sqlType : null,
+            nullabilityChanged ? column.isNullable() : null,
+            column.getDefinition(type),
+            column.getBackfillValue(type)
+        );
+    }
+
+    private static String key(final String columnName) {
+        return columnName.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,114 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A column type reduced to what the diff compares: its family and, for character columns, the maximum length.
+ * Dialects spell the same type differently ({@code VARCHAR(255)}, {@code character varying},
+ * {@code CHARACTER VARYING(255)}), so only families are compared. Types the migrator never generates fall into
+ * {@link Family#OTHER} and are never reported as changed.
+ */
+final class ColumnType {
+
+    enum Family {
+        TEXT, INTEGER, BOOLEAN, TIMESTAMP, DECIMAL, BINARY, OTHER
+    }
+
+    private final Family family;
+    private final Integer length;
+
+    private ColumnType(final Family family, final Integer length) {
+        this.family = family;
+        this.length = length;
+    }
+
+    static ColumnType of(final DatabaseFieldType field) {
+        return parse(field.getType(), field.getLength());
+    }
+
+    /**
+     * @param reportedLength the length the catalog reports next to the type, used when the type does not spell it
+     */
+    static ColumnType parse(final String type, final Integer reportedLength) {
+        if (type == null) {
+            return new ColumnType(Family.OTHER, null);
+        }
+
+        final String name = type.toUpperCase(Locale.ROOT);
+        final int open = name.indexOf('(');
+        final String base = open < 0 ? name : name.substring(0, open);
+
+        if (base.contains("CHAR") || base.contains("TEXT") || base.contains("CLOB")) {
+            if (base.contains("TEXT") || base.contains("CLOB") || base.contains("LARGE OBJECT")) {
+                return new ColumnType(Family.TEXT, null);
+            }
+            final Integer length = open < 0 ? reportedLength : parseLength(name.substring(open + 1));
+            return new ColumnType(Family.TEXT, length);
+        }
+        if (base.contains("BOOL") || base.startsWith("BIT") || base.startsWith("TINYINT")) {
+            // booleans are rendered as TINYINT(1) outside of Postgres
+            return new ColumnType(Family.BOOLEAN, null);
+        }
+        if (base.trim().matches("(TINY|SMALL|MEDIUM|BIG)?INT(EGER|[248])?( UNSIGNED)?|(BIG|SMALL)?SERIAL[248]?")) {
+            return new ColumnType(Family.INTEGER, null);
+        }
+        if (base.contains("TIMESTAMP") || base.contains("DATE")) {
+            return new ColumnType(Family.TIMESTAMP, null);
+        }
+        if (base.contains("DOUBLE") || base.contains("FLOAT") || base.contains("REAL") || base.contains("DECIMAL") || base.contains("NUMERIC")) {
+            return new ColumnType(Family.DECIMAL, null);
+        }
+        if (base.contains("BLOB") || base.contains("BINARY") || base.contains("BYTEA")) {
+            return new ColumnType(Family.BINARY, null);
+        }
+        return new ColumnType(Family.OTHER, null);
+    }
+
+    private static Integer parseLength(final String arguments) {
+        final int end = arguments.indexOf(')');
+        try {
+            return Integer.valueOf((end < 0 ? arguments : arguments.substring(0, end)).trim());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    Family getFamily() {
+        return family;
+    }
+
+    /**
+     * The maximum length of a character column, or null when it is unbounded or not a character column.
+     */
+    Integer getLength() {
+        return length;
+    }
+
+    boolean isComparable() {
+        return family != Family.OTHER;
+    }
+
+    /**
+     * True when both types are of the same family and hold the same values.
+     */
+    boolean sameAs(final ColumnType other) {
+        return family == other.family && Objects.equals(length, other.length);
+    }
+
+    /**
+     * True when every value of this type fits into {@code target}, e.g. {@code VARCHAR(100)} into
+     * {@code VARCHAR(255)} or {@code TEXT}.
+     */
+    boolean widensTo(final ColumnType target) {
+        if (family != target.family) {
+            return false;
+        }
+        return target.length == null || length != null && length <= target.length;
+    }
+
+    @Override
+    public String toString() {
+        return length == null ? family.name() : family + "(" + length + ")";
+    }
+}
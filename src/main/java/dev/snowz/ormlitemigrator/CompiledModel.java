@@ -0,0 +1,124 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.*;
+
+/**
+ * Immutable, precomputed description of a model class: its table, its columns and the CREATE TABLE and
+ * index statements for every supported database type. Safe to share between threads and interpreters.
+ */
+public class CompiledModel {
+
+    private final Class<?> modelClass;
+    private final String tableName;
+    private final List<ModelColumn> columns;
+    private final Map<Database.Type, String> createStatements;
+    private final List<Indexes> indexes;
+    private final List<String> indexStatements;
+    private final List<String> foreignTables;
+
+    public CompiledModel(final Class<?> modelClass, final String tableName, final List<ModelColumn> columns, final Map<Database.Type, String> createStatements, final List<Indexes> indexes) {
+        this(modelClass, tableName, columns, createStatements, indexes, List.of());
+    }
+
+    public CompiledModel(final Class<?> modelClass, final String tableName, final List<ModelColumn> columns, final Map<Database.Type, String> createStatements, final List<Indexes> indexes, final List<String> foreignTables) {
+        this.modelClass = modelClass;
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.createStatements = Collections.unmodifiableMap(createStatements.isEmpty() ? new EnumMap<>(Database.Type.class) : new EnumMap<>(createStatements));
+
+        final List<Indexes> copies = new ArrayList<>();
+        final List<String> statements = new ArrayList<>();
+        for (final Indexes index : indexes) {
+            final Indexes copy = new Indexes(index.getName());
+            copy.setUnique(index.getUnique());
+            copy.setColumns(Collections.unmodifiableList(new ArrayList<>(index.getColumns())));
+            copies.add(copy);
+            statements.add(Table.createIndexStatement(copy, tableName));
+        }
+        this.indexes = Collections.unmodifiableList(copies);
+        this.indexStatements = Collections.unmodifiableList(statements);
+        this.foreignTables = Collections.unmodifiableList(new ArrayList<>(foreignTables));
+    }
+
+    /**
+     * Renders the given fields for every database type. Used by the registry at runtime and by the annotation
+     * processor at build time, so both produce the same statements.
+     */
+    public static CompiledModel of(final Class<?> modelClass, final String tableName, final List<IncomingDatabaseFieldType> fields) {
+        final List<String> foreignTables = new ArrayList<>();
+        for (final IncomingDatabaseFieldType field : fields) {
+            if (field.getDatabaseField() != null && field.getDatabaseField().foreign()) {
+                foreignTables.add(ModelRegistry.tableName(field.getFieldClass()));
+            }
+        }
+        return of(modelClass, tableName, fields, foreignTables);
+    }
+
+    /**
+     * Like {@link #of(Class, String, List)} with the tables the foreign fields reference given explicitly, for when
+     * the field classes cannot be loaded.
+     */
+    public static CompiledModel of(final Class<?> modelClass, final String tableName, final List<IncomingDatabaseFieldType> fields, final List<String> foreignTables) {
+        return compile(modelClass, new Table(null, tableName, null, fields), foreignTables);
+    }
+
+    private static CompiledModel compile(final Class<?> modelClass, final Table table, final List<String> foreignTables) {
+        final List<ModelColumn> columns = new ArrayList<>();
+        for (final IncomingDatabaseFieldType field : table.getDatabaseField()) {
+            columns.add(ModelColumn.compile(field));
+        }
+
+        final Map<Database.Type, String> createStatements = new EnumMap<>(Database.Type.class);
+        for (final Database.Type type : Database.Type.values()) {
+            createStatements.put(type, table.createStatement(type));
+        }
+
+        return new CompiledModel(modelClass, table.getTableName(), columns, createStatements, table.indexes(), foreignTables);
+    }
+
+    public Class<?> getModelClass() {
+        return modelClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<ModelColumn> getColumns() {
+        return columns;
+    }
+
+    public String getCreateStatement(final Database.Type type) {
+        return createStatements.get(type);
+    }
+
+    /**
+     * The indexes declared through {@code index}, {@code unique}, {@code indexName} and {@code uniqueIndexName}.
+     */
+    public List<Indexes> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * The CREATE INDEX statements of the declared indexes, which render the same on every database.
+     */
+    public List<String> getIndexStatements() {
+        return indexStatements;
+    }
+
+    /**
+     * The tables referenced by the model's {@code foreign} fields, which have to exist before this one.
+     */
+    public List<String> getForeignTables() {
+        return foreignTables;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledModel{" +
+            "modelClass=" + modelClass +
+            ", tableName='" + tableName + '\'' +
+            ", columns=" + columns +
+            '}';
+    }
+}
@@ -0,0 +1,39 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A connection used for one unit of work. Closing the lease returns a borrowed connection to its data source and
+ * leaves a held connection open.
+ */
+public class ConnectionLease implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionLease.class.getSimpleName());
+
+    private final Connection connection;
+    private final boolean borrowed;
+
+    ConnectionLease(final Connection connection, final boolean borrowed) {
+        this.connection = connection;
+        this.borrowed = borrowed;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        if (!borrowed) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            logger.warn("could not return the connection - {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package dev.snowz.ormlitemigrator;
+
+import java.time.Duration;
+
+/**
+ * Estimates what each operation of a table migration costs on the given database, from the table statistics:
+ * metadata-only changes are instant, index builds and constraint checks read the whole table in place, and column
+ * changes and table rebuilds copy it. Durations assume the table is read at a fixed rate, in bytes per second when
+ * its size is known and in rows per second otherwise.
+ */
+class CostEstimator {
+
+    static final long DEFAULT_BYTES_PER_SECOND = 50L * 1024 * 1024;
+    static final long DEFAULT_ROWS_PER_SECOND = 100_000;
+
+    private final Database.Type type;
+    private final boolean online;
+    private final long bytesPerSecond;
+    private final long rowsPerSecond;
+
+    CostEstimator(final Database.Type type, final boolean online) {
+        this(type, online, DEFAULT_BYTES_PER_SECOND, DEFAULT_ROWS_PER_SECOND);
+    }
+
+    CostEstimator(final Database.Type type, final boolean online, final long bytesPerSecond, final long rowsPerSecond) {
+        this.type = type;
+        this.online = online;
+        this.bytesPerSecond = bytesPerSecond;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    void estimate(final TableMigration migration) {
+        final TableStatistics statistics = migration.getStatistics();
+        final boolean created = migration.getOperations().stream().anyMatch(o -> o instanceof CreateTable);
+        final boolean indexChanges = migration.getOperations().stream().anyMatch(o -> o instanceof CreateIndex || o instanceof DropIndex);
+
+        for (final MigrationOperation operation : migration.getOperations()) {
+            if (created || operation instanceof CreateTable || operation instanceof DropIndex) {
+                operation.setCost(OperationCost.FREE);
+            } else if (operation instanceof AddColumn) {
+                OperationCost cost = OperationCost.FREE;
+                if (rebuildsOnAddColumn(indexChanges)) {
+                    cost = type == Database.Type.H2
+                        ? cost(statistics, OperationCost.Kind.REBUILD, OperationCost.LockScope.WRITES)
+                        : cost(statistics, OperationCost.Kind.IN_PLACE, OperationCost.LockScope.NONE);
+                }
+                if (((AddColumn) operation).isBackfilled()) {
+                    // every row is updated, one chunk at a time
+                    cost = cost.plus(cost(statistics, OperationCost.Kind.IN_PLACE, OperationCost.LockScope.NONE));
+                }
+                operation.setCost(cost);
+            } else if (operation instanceof CreateIndex) {
+                operation.setCost(cost(statistics, OperationCost.Kind.IN_PLACE, indexBuildBlocksWrites() ? OperationCost.LockScope.WRITES : OperationCost.LockScope.NONE));
+            } else if (operation instanceof AlterColumn) {
+                operation.setCost(alterColumn((AlterColumn) operation, statistics));
+            } else if (operation instanceof RebuildTable) {
+                // every row is copied into the new table
+                operation.setCost(cost(statistics, OperationCost.Kind.REBUILD, OperationCost.LockScope.WRITES));
+            }
+        }
+    }
+
+    /**
+     * Widening a character column only changes the catalog on Postgres and runs in place on MySQL and MariaDB; any
+     * other type change rewrites the table, and Postgres and H2 keep even readers out while they do. Adding NOT NULL
+     * reads every row to check it, after the NULLs have been filled.
+     */
+    private OperationCost alterColumn(final AlterColumn operation, final TableStatistics statistics) {
+        final boolean mysql = type == Database.Type.MySQL || type == Database.Type.MariaDB;
+        final OperationCost.LockScope exclusive = mysql ? OperationCost.LockScope.WRITES : OperationCost.LockScope.ALL;
+        OperationCost cost = OperationCost.FREE;
+
+        if (operation.isTypeChanged()) {
+            final ColumnType from = ColumnType.parse(operation.getFromType(), null);
+            final ColumnType to = ColumnType.parse(operation.getToType(), null);
+            final boolean widening = from.getFamily() == ColumnType.Family.TEXT && from.widensTo(to);
+            if (widening && mysql) {
+                cost = cost.plus(cost(statistics, OperationCost.Kind.IN_PLACE, online ? OperationCost.LockScope.NONE : OperationCost.LockScope.WRITES));
+            } else if (!(widening && type == Database.Type.Postgres)) {
+                cost = cost.plus(cost(statistics, OperationCost.Kind.REBUILD, exclusive));
+            }
+        }
+        if (operation.isTightened()) {
+            if (operation.getFillValue() != null) {
+                cost = cost.plus(cost(statistics, OperationCost.Kind.IN_PLACE, OperationCost.LockScope.NONE));
+            }
+            cost = cost.plus(cost(statistics, OperationCost.Kind.IN_PLACE, mysql && online ? OperationCost.LockScope.NONE : exclusive));
+        } else if (operation.isNullabilityChanged() && mysql && !operation.isTypeChanged()) {
+            // MODIFY COLUMN rebuilds the table even to drop NOT NULL
+            cost = cost.plus(cost(statistics, OperationCost.Kind.REBUILD, online ? OperationCost.LockScope.NONE : OperationCost.LockScope.WRITES));
+        }
+        return cost;
+    }
+
+    /**
+     * MySQL and MariaDB add columns instantly unless the same ALTER also changes indexes, which forces an in-place
+     * rebuild. H2 copies the table, Postgres and SQLite only change the catalog.
+     */
+    private boolean rebuildsOnAddColumn(final boolean indexChanges) {
+        if (type == Database.Type.MySQL || type == Database.Type.MariaDB) {
+            return indexChanges;
+        }
+        return type == Database.Type.H2;
+    }
+
+    private boolean indexBuildBlocksWrites() {
+        if (type == Database.Type.MySQL || type == Database.Type.MariaDB) {
+            return false;
+        }
+        if (type == Database.Type.Postgres) {
+            return !online;
+        }
+        return true;
+    }
+
+    private OperationCost cost(final TableStatistics statistics, final OperationCost.Kind kind, final OperationCost.LockScope lockScope) {
+        return new OperationCost(statistics.getRows(), statistics.getBytes(), kind, lockScope, duration(statistics));
+    }
+
+    private Duration duration(final TableStatistics statistics) {
+        if (statistics.getBytes() >= 0) {
+            return Duration.ofMillis(statistics.getBytes() * 1000 / bytesPerSecond);
+        }
+        if (statistics.getRows() >= 0) {
+            return Duration.ofMillis(statistics.getRows() * 1000 / rowsPerSecond);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,20 @@
+package dev.snowz.ormlitemigrator;
+
+public class CreateIndex extends MigrationOperation {
+
+    private final Indexes index;
+
+    public CreateIndex(final String tableName, final Indexes index) {
+        super(tableName);
+        this.index = index;
+    }
+
+    public Indexes getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "CreateIndex{" + getTableName() + "." + index.getName() + index.getColumns() + (Boolean.TRUE.equals(index.getUnique()) ? " unique" : "") + "}";
+    }
+}
@@ -0,0 +1,20 @@
+package dev.snowz.ormlitemigrator;
+
+public class CreateTable extends MigrationOperation {
+
+    private final CompiledModel model;
+
+    public CreateTable(final CompiledModel model) {
+        super(model.getTableName());
+        this.model = model;
+    }
+
+    public CompiledModel getModel() {
+        return model;
+    }
+
+    @Override
+    public String toString() {
+        return "CreateTable{" + getTableName() + "}";
+    }
+}
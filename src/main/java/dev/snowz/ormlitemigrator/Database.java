@@ -1,8 +1,14 @@
 package dev.snowz.ormlitemigrator;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.SQLException;
 
-public class Database {
+/**
+ * A database to migrate, either on one connection held for its whole life or on a {@link DataSource} such as a
+ * connection pool, which connections are borrowed from per unit of work and returned afterwards.
+ */
+public class Database implements AutoCloseable {
 
     public static final String MySQLDriver = "com.mysql.cj.jdbc.Driver";
 
@@ -15,7 +21,7 @@ public class Database {
         return connectionString;
     }
 
-    enum Type {
+    public enum Type {
         MySQL, Postgres, SqlLite, MariaDB, H2
     }
 
@@ -27,20 +33,69 @@ public class Database {
         return driver;
     }
 
+    /**
+     * The connection this database holds. A database built on a {@link DataSource} holds none, use {@link #lease()}.
+     */
     public Connection getConnection() {
+        if (connection == null) {
+            throw new IllegalStateException(dataSource == null ? "an offline database has no connection"
+                : "a DataSource-backed database holds no connection, use lease()");
+        }
         return connection;
     }
 
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
     private final Type type;
     private final String driver;
     private final Connection connection;
     private final String connectionString;
+    private final DataSource dataSource;
 
     public Database(final Type type, final String driver, final Connection connection, final String connectionString) {
         this.type = type;
         this.driver = driver;
         this.connection = connection;
         this.connectionString = connectionString;
+        this.dataSource = null;
+    }
+
+    public Database(final Type type, final DataSource dataSource) {
+        this.type = type;
+        this.driver = null;
+        this.connection = null;
+        this.connectionString = null;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * A database that is never connected to, for planning against a {@link SchemaSnapshot} read from a file.
+     */
+    public static Database offline(final Type type) {
+        return new Database(type, (DataSource) null);
+    }
+
+    /**
+     * A connection for one unit of work: borrowed from the data source and returned when the lease is closed, or
+     * the held connection, which stays open.
+     */
+    public ConnectionLease lease() throws SQLException {
+        if (dataSource != null) {
+            return new ConnectionLease(dataSource.getConnection(), true);
+        }
+        return new ConnectionLease(getConnection(), false);
+    }
+
+    /**
+     * Closes the held connection. A data source belongs to the application and is left open.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (connection != null && !connection.isClosed()) {
+            connection.close();
+        }
     }
 
     public SchemaInterpreter getSchemaManager() {
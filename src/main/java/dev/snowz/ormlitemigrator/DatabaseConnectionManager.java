@@ -2,11 +2,10 @@ package dev.snowz.ormlitemigrator;
 
 import dev.snowz.ormlitemigrator.exception.ConnectionStringException;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class DatabaseConnectionManager {
 
@@ -50,21 +49,34 @@ public class DatabaseConnectionManager {
         throw new ConnectionStringException(connectionString + " is not valid");
     }
 
+    /**
+     * Builds a database that borrows its connections from the data source, e.g. the application's pool, instead of
+     * opening one of its own. The type is read from the JDBC URL of one borrowed connection.
+     */
+    public static Database withDataSource(final DataSource dataSource) throws ConnectionStringException, SQLException {
+        final String url;
+        try (final Connection connection = dataSource.getConnection()) {
+            url = connection.getMetaData().getURL();
+        }
 
-    static List<IncomingDatabaseFieldType> determineFieldsToBeCreated(final List<IncomingDatabaseFieldType> incomingDatabaseFields, final List<DatabaseFieldType> existingFields) {
-        final List<IncomingDatabaseFieldType> fieldsToBeCreated = new ArrayList<>();
-        for (final IncomingDatabaseFieldType field : incomingDatabaseFields) {
-            if (field.getDatabaseField() != null) {
-                if (!in(field, existingFields)) {
-                    fieldsToBeCreated.add(field);
-                }
+        final String[] split = url.split(":");
+        if (split.length > 1 && split[0].equals("jdbc")) {
+            switch (split[1]) {
+                case "mysql":
+                    return new Database(Database.Type.MySQL, dataSource);
+                case "sqlite":
+                    return new Database(Database.Type.SqlLite, dataSource);
+                case "postgresql":
+                    return new Database(Database.Type.Postgres, dataSource);
+                case "mariadb":
+                    return new Database(Database.Type.MariaDB, dataSource);
+                case "h2":
+                    return new Database(Database.Type.H2, dataSource);
+                default:
+                    break;
             }
         }
 
-        return fieldsToBeCreated;
-    }
-
-    private static boolean in(final IncomingDatabaseFieldType field, final List<DatabaseFieldType> existingFields) {
-        return existingFields.stream().anyMatch(f -> f.getFieldName().equalsIgnoreCase(field.getFieldName()));
+        throw new ConnectionStringException(url + " is not valid");
     }
 }
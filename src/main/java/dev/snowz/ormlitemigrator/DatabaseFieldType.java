@@ -4,10 +4,22 @@ public class DatabaseFieldType {
 
     private final String fieldName;
     private final String type;
+    private final Boolean nullable;
+    private final Integer length;
 
     public DatabaseFieldType(final String fieldName, final String type) {
+        this(fieldName, type, null, null);
+    }
+
+    /**
+     * @param nullable whether the column accepts NULL, or null when the database did not report it
+     * @param length   the maximum character length, or null when unknown or not a character column
+     */
+    public DatabaseFieldType(final String fieldName, final String type, final Boolean nullable, final Integer length) {
         this.fieldName = fieldName;
         this.type = type;
+        this.nullable = nullable;
+        this.length = length;
     }
 
     public String getType() {
@@ -18,11 +30,21 @@ public class DatabaseFieldType {
         return fieldName;
     }
 
+    public Boolean getNullable() {
+        return nullable;
+    }
+
+    public Integer getLength() {
+        return length;
+    }
+
     @Override
     public String toString() {
         return "DatabaseFieldType{" +
             "fieldName='" + fieldName + '\'' +
             ", type='" + type + '\'' +
+            ", nullable=" + nullable +
+            ", length=" + length +
             '}';
     }
 }
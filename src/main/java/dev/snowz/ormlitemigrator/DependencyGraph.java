@@ -0,0 +1,123 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The foreign-field references between the queued tables. It orders the tables so that every table follows the
+ * tables it references, keeping the queue order wherever the references allow. It also assigns each table a level
+ * one above the highest level it references, so tables of the same level do not depend on each other. References
+ * to tables outside the queue and self-references are ignored. A reference that closes a cycle is dropped with a
+ * warning.
+ */
+class DependencyGraph {
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraph.class.getSimpleName());
+
+    private final Map<String, Set<String>> references = new LinkedHashMap<>();
+    private final Map<String, Integer> levels = new HashMap<>();
+
+    DependencyGraph(final List<CompiledModel> models) {
+        for (final CompiledModel model : models) {
+            references.computeIfAbsent(key(model.getTableName()), k -> new LinkedHashSet<>());
+        }
+        for (final CompiledModel model : models) {
+            final String table = key(model.getTableName());
+            for (final String foreignTable : model.getForeignTables()) {
+                final String referenced = key(foreignTable);
+                if (!referenced.equals(table) && references.containsKey(referenced)) {
+                    references.get(table).add(referenced);
+                }
+            }
+        }
+
+        final Set<String> visiting = new HashSet<>();
+        for (final String table : references.keySet()) {
+            level(table, visiting);
+        }
+    }
+
+    private int level(final String table, final Set<String> visiting) {
+        final Integer known = levels.get(table);
+        if (known != null) {
+            return known;
+        }
+
+        visiting.add(table);
+        int level = 0;
+        for (final String referenced : new ArrayList<>(references.get(table))) {
+            if (visiting.contains(referenced)) {
+                logger.warn("foreign keys of {} and {} form a cycle, ignoring the reference from {}", table, referenced, table);
+                references.get(table).remove(referenced);
+                continue;
+            }
+            level = Math.max(level, level(referenced, visiting) + 1);
+        }
+        visiting.remove(table);
+
+        levels.put(table, level);
+        return level;
+    }
+
+    int level(final String tableName) {
+        return levels.getOrDefault(key(tableName), 0);
+    }
+
+    /**
+     * The models in dependency order. Of the tables whose references are all placed, the one queued first goes
+     * next, and models of the same table keep their relative order.
+     */
+    List<CompiledModel> order(final List<CompiledModel> models) {
+        final Map<String, Integer> queue = new HashMap<>();
+        for (final String table : references.keySet()) {
+            queue.put(table, queue.size());
+        }
+        final Map<String, Integer> pending = new HashMap<>();
+        final Map<String, List<String>> dependents = new HashMap<>();
+        for (final Map.Entry<String, Set<String>> table : references.entrySet()) {
+            pending.put(table.getKey(), table.getValue().size());
+            for (final String referenced : table.getValue()) {
+                dependents.computeIfAbsent(referenced, k -> new ArrayList<>()).add(table.getKey());
+            }
+        }
+
+        final PriorityQueue<String> ready = new PriorityQueue<>(Comparator.comparingInt(queue::get));
+        for (final String table : references.keySet()) {
+            if (pending.get(table) == 0) {
+                ready.add(table);
+            }
+        }
+
+        final Map<String, Integer> position = new HashMap<>();
+        while (!ready.isEmpty()) {
+            final String table = ready.poll();
+            position.put(table, position.size());
+            for (final String dependent : dependents.getOrDefault(table, List.of())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        final List<CompiledModel> ordered = new ArrayList<>(models);
+        ordered.sort(Comparator.comparingInt(m -> position.get(key(m.getTableName()))));
+        return ordered;
+    }
+
+    /**
+     * Splits a plan in dependency order into groups of tables that can be applied at the same time, lowest level
+     * first.
+     */
+    List<List<TableMigration>> levels(final List<TableMigration> plan) {
+        final SortedMap<Integer, List<TableMigration>> byLevel = new TreeMap<>();
+        for (final TableMigration tableMigration : plan) {
+            byLevel.computeIfAbsent(level(tableMigration.getTableName()), k -> new ArrayList<>()).add(tableMigration);
+        }
+        return new ArrayList<>(byLevel.values());
+    }
+
+    private static String key(final String tableName) {
+        return tableName.toUpperCase(Locale.ROOT);
+    }
+}
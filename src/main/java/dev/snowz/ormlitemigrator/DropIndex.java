@@ -0,0 +1,20 @@
+package dev.snowz.ormlitemigrator;
+
+public class DropIndex extends MigrationOperation {
+
+    private final String indexName;
+
+    public DropIndex(final String tableName, final String indexName) {
+        super(tableName);
+        this.indexName = indexName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    @Override
+    public String toString() {
+        return "DropIndex{" + getTableName() + "." + indexName + "}";
+    }
+}
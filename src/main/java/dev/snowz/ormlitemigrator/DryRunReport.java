@@ -0,0 +1,92 @@
+package dev.snowz.ormlitemigrator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A migration plan with the estimated cost of every operation: the size of its table, whether the database applies
+ * it instantly, in place or by rebuilding the table, what it locks and for about how long. Nothing has been applied.
+ */
+public class DryRunReport {
+
+    private final Database.Type type;
+    private final List<TableMigration> plan;
+
+    DryRunReport(final Database.Type type, final List<TableMigration> plan) {
+        this.type = type;
+        this.plan = Collections.unmodifiableList(plan);
+    }
+
+    public Database.Type getType() {
+        return type;
+    }
+
+    public List<TableMigration> getPlan() {
+        return plan;
+    }
+
+    /**
+     * The estimated cost of the whole plan, with the most expensive kind and the widest lock of any operation.
+     */
+    public OperationCost getCost() {
+        OperationCost cost = OperationCost.FREE;
+        for (final TableMigration table : plan) {
+            cost = cost.plus(table.getCost());
+        }
+        return cost;
+    }
+
+    /**
+     * The operations that keep writers waiting for longer than {@code limit}. An operation that blocks writes on a
+     * table of unknown size is included, since its duration cannot be ruled out.
+     */
+    public List<MigrationOperation> blockingLongerThan(final Duration limit) {
+        final List<MigrationOperation> blocking = new ArrayList<>();
+        for (final TableMigration table : plan) {
+            for (final MigrationOperation operation : table.getOperations()) {
+                final OperationCost cost = operation.getCost();
+                if (cost.blocksWrites() && (cost.getEstimatedDuration() == null || cost.getEstimatedDuration().compareTo(limit) > 0)) {
+                    blocking.add(operation);
+                }
+            }
+        }
+        return blocking;
+    }
+
+    /**
+     * Writes the report as text, one line per table followed by one line per operation.
+     */
+    public void write(final Writer out) throws IOException {
+        out.write("dry run on " + type + ": " + plan.size() + " tables, " + getCost() + "\n");
+        for (final TableMigration table : plan) {
+            final TableStatistics statistics = table.getStatistics();
+            out.write(table.getTableName() + " (" + count(statistics.getRows(), "rows") + ", " + count(statistics.getBytes(), "bytes")
+                + ", " + count(statistics.getIndexBytes(), "bytes in indexes") + ")\n");
+            for (final MigrationOperation operation : table.getOperations()) {
+                out.write("  " + operation + ": " + operation.getCost() + "\n");
+            }
+        }
+    }
+
+    private static String count(final long value, final String unit) {
+        return (value < 0 ? "?" : String.valueOf(value)) + " " + unit;
+    }
+
+    @Override
+    public String toString() {
+        final StringWriter report = new StringWriter();
+        try {
+            this.write(report);
+        } catch (final IOException e) {
+            // a StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return report.toString();
+    }
+}
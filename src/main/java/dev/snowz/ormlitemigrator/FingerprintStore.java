@@ -0,0 +1,76 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps the fingerprint of the last successfully applied model set in a small metadata table,
+ * one row per scope.
+ */
+class FingerprintStore {
+    private static final Logger logger = LoggerFactory.getLogger(FingerprintStore.class.getSimpleName());
+
+    static final String TABLE_NAME = "ormlite_migrator_state";
+
+    private final Connection connection;
+
+    FingerprintStore(final Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return the stored fingerprint, or null when none was stored yet or it was written by another migrator version
+     */
+    String read(final String scope) {
+        final String query = "SELECT fingerprint, migrator_version FROM " + TABLE_NAME + " WHERE scope = ?";
+        try (final PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, scope);
+            try (final ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && SchemaFingerprint.MIGRATOR_VERSION.equals(rs.getString("migrator_version"))) {
+                    return rs.getString("fingerprint");
+                }
+            }
+        } catch (final SQLException e) {
+            // the metadata table does not exist before the first successful migration
+            logger.debug("no stored fingerprint for {} - {}", scope, e.getMessage());
+        }
+        return null;
+    }
+
+    void write(final String scope, final String fingerprint) throws SQLException {
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "scope VARCHAR(128) NOT NULL, " +
+                "fingerprint VARCHAR(64) NOT NULL, " +
+                "migrator_version VARCHAR(32) NOT NULL, " +
+                "updated_at BIGINT NOT NULL, " +
+                "PRIMARY KEY(scope))");
+        }
+
+        final String update = "UPDATE " + TABLE_NAME + " SET fingerprint = ?, migrator_version = ?, updated_at = ? WHERE scope = ?";
+        try (final PreparedStatement stmt = connection.prepareStatement(update)) {
+            stmt.setString(1, fingerprint);
+            stmt.setString(2, SchemaFingerprint.MIGRATOR_VERSION);
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.setString(4, scope);
+            if (stmt.executeUpdate() > 0) {
+                return;
+            }
+        }
+
+        final String insert = "INSERT INTO " + TABLE_NAME + " (scope, fingerprint, migrator_version, updated_at) VALUES (?, ?, ?, ?)";
+        try (final PreparedStatement stmt = connection.prepareStatement(insert)) {
+            stmt.setString(1, scope);
+            stmt.setString(2, fingerprint);
+            stmt.setString(3, SchemaFingerprint.MIGRATOR_VERSION);
+            stmt.setLong(4, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+}
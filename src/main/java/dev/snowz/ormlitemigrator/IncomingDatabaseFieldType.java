@@ -26,6 +26,46 @@ public class IncomingDatabaseFieldType {
     }
 
     public String generateStatement(final Database.Type databaseType) {
+        return generateStatement(databaseType, false);
+    }
+
+    /**
+     * The column definition without its NOT NULL constraint, used to add a column before it is backfilled.
+     */
+    public String generateNullableStatement(final Database.Type databaseType) {
+        return generateStatement(databaseType, true);
+    }
+
+    /**
+     * The SQL literal that existing rows get when this NOT NULL column is added to a populated table: the
+     * field's {@code defaultValue}, or the zero value of its type. Null for columns that do not need one.
+     */
+    public String backfillValue(final Database.Type databaseType) {
+        if (databaseField == null || databaseField.canBeNull() || databaseField.id() || databaseField.generatedId()) {
+            return null;
+        }
+
+        final String defaultValue = DatabaseField.DEFAULT_STRING.equals(databaseField.defaultValue()) ? null : databaseField.defaultValue();
+        final Class fieldClass = this.getFieldClass();
+
+        if (fieldClass.equals(Boolean.class) || fieldClass.equals(boolean.class)) {
+            final boolean value = defaultValue != null && Boolean.parseBoolean(defaultValue);
+            if (databaseType == Database.Type.Postgres) {
+                return value ? "TRUE" : "FALSE";
+            }
+            return value ? "1" : "0";
+        }
+        if (fieldClass.isPrimitive() || Number.class.isAssignableFrom(fieldClass)) {
+            return defaultValue != null ? defaultValue : "0";
+        }
+        if (fieldClass.equals(Date.class) && defaultValue == null) {
+            // SQLite only accepts constant defaults when adding a column
+            return databaseType == Database.Type.SqlLite ? "'1970-01-01 00:00:00'" : "CURRENT_TIMESTAMP";
+        }
+        return "'" + (defaultValue != null ? defaultValue : "").replace("'", "''") + "'";
+    }
+
+    private String generateStatement(final Database.Type databaseType, final boolean allowNull) {
         String field = "";
         final String dataType = "";
 
@@ -78,7 +118,7 @@ public class IncomingDatabaseFieldType {
         boolean isAutoIncrementing = false;
 
         if (databaseField != null) {
-            if (!databaseField.canBeNull()) {
+            if (!databaseField.canBeNull() && !allowNull) {
                 isNotNull = true;
             }
 
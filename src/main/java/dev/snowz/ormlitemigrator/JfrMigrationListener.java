@@ -0,0 +1,115 @@
+package dev.snowz.ormlitemigrator;
+
+import jdk.jfr.*;
+
+import java.time.Duration;
+
+/**
+ * Records the migration as Java Flight Recorder events under the "ORMLite Migrator" category, so migration
+ * latency shows up next to the rest of a recording. Events that are not enabled in the recording cost a
+ * field check.
+ */
+public class JfrMigrationListener implements MigrationListener {
+
+    @Override
+    public void phaseFinished(final MigrationPhase phase, final Duration elapsed) {
+        final PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.name();
+            event.elapsed = elapsed.toNanos();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void tablePlanned(final String tableName, final Duration elapsed) {
+        final TableEvent event = new TableEvent();
+        if (event.isEnabled()) {
+            event.tableName = tableName;
+            event.action = "plan";
+            event.elapsed = elapsed.toNanos();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void tableApplied(final TableMigration table, final Duration elapsed) {
+        final TableEvent event = new TableEvent();
+        if (event.isEnabled()) {
+            event.tableName = table.getTableName();
+            event.action = "apply";
+            event.statements = table.getStatements().size();
+            event.elapsed = elapsed.toNanos();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void statementExecuted(final MigrationStatement statement, final Duration elapsed) {
+        final StatementEvent event = new StatementEvent();
+        if (event.isEnabled()) {
+            event.sql = statement.getSql();
+            event.strategy = statement.getStrategy();
+            event.elapsed = elapsed.toNanos();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void statementFailed(final StatementFailure failure) {
+        final StatementEvent event = new StatementEvent();
+        if (event.isEnabled()) {
+            event.sql = failure.getStatement();
+            event.error = failure.getException().getMessage();
+            event.commit();
+        }
+    }
+
+    @Name("dev.snowz.ormlitemigrator.Phase")
+    @Label("Migration Phase")
+    @Category("ORMLite Migrator")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name("dev.snowz.ormlitemigrator.Table")
+    @Label("Migration Table")
+    @Category("ORMLite Migrator")
+    static class TableEvent extends Event {
+        @Label("Table")
+        String tableName;
+
+        @Label("Action")
+        String action;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name("dev.snowz.ormlitemigrator.Statement")
+    @Label("Migration Statement")
+    @Category("ORMLite Migrator")
+    static class StatementEvent extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Online DDL Strategy")
+        String strategy;
+
+        @Label("Error")
+        String error;
+
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+}
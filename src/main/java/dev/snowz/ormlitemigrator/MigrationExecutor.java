@@ -0,0 +1,434 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Runs generated DDL through JDBC batches, falling back to one statement at a time when the
+ * driver cannot batch. Every failing statement is reported in the {@link MigrationResult}.
+ * Online DDL statements run on their own so a rejected strategy can fall back to the next one.
+ */
+class MigrationExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationExecutor.class.getSimpleName());
+
+    private final Database.Type type;
+    private final Connection connection;
+    private final int batchSize;
+    private final MigrationListener listener;
+    // the table each statement belongs to, and per table the statements still to run and when its first one started
+    private final Map<MigrationStatement, TableMigration> owners = new IdentityHashMap<>();
+    private final Map<TableMigration, Integer> remaining = new IdentityHashMap<>();
+    private final Map<TableMigration, Long> started = new IdentityHashMap<>();
+
+    MigrationExecutor(final Database.Type type, final Connection connection, final int batchSize) {
+        this(type, connection, batchSize, MigrationListener.NOOP);
+    }
+
+    MigrationExecutor(final Database.Type type, final Connection connection, final int batchSize, final MigrationListener listener) {
+        this.type = type;
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.listener = listener;
+    }
+
+    static boolean supportsTransactionalDdl(final Database.Type type) {
+        // H2 commits the open transaction on every CREATE and ALTER, which would also release a table's savepoint
+        return type == Database.Type.SqlLite || type == Database.Type.Postgres;
+    }
+
+    MigrationResult apply(final List<TableMigration> plan) throws SQLException {
+        if (plan.stream().noneMatch(TableMigration::isAtomic) || !supportsTransactionalDdl(type)) {
+            final List<MigrationStatement> statements = new ArrayList<>();
+            for (final TableMigration table : plan) {
+                track(table, table.getStatements().size());
+                statements.addAll(table.getStatements());
+            }
+            return execute(statements);
+        }
+
+        final MigrationResult result = new MigrationResult();
+        final long start = System.nanoTime();
+        final List<MigrationStatement> run = new ArrayList<>();
+        for (final TableMigration table : plan) {
+            if (table.isAtomic()) {
+                executeAll(run, result);
+                run.clear();
+                applyInTransaction(List.of(table), result);
+            } else {
+                track(table, table.getStatements().size());
+                run.addAll(table.getStatements());
+            }
+        }
+        executeAll(run, result);
+
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    MigrationResult execute(final List<MigrationStatement> statements) throws SQLException {
+        final MigrationResult result = new MigrationResult();
+        final long start = System.nanoTime();
+
+        executeAll(statements, result);
+
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    MigrationResult applyTransactionally(final List<TableMigration> plan) throws SQLException {
+        final MigrationResult result = new MigrationResult();
+        final long start = System.nanoTime();
+
+        if (supportsTransactionalDdl(type)) {
+            applyInTransaction(plan, result);
+        } else {
+            // DDL commits implicitly here, the best we can do is keep each table's statements together
+            logger.info("{} does not support transactional DDL, applying the plan table by table", type);
+            for (final TableMigration table : plan) {
+                track(table, table.getStatements().size());
+                executeAll(table.getStatements(), result);
+            }
+        }
+
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    private void applyInTransaction(final List<TableMigration> plan, final MigrationResult result) throws SQLException {
+        final List<MigrationStatement> deferred = new ArrayList<>();
+        final Map<TableMigration, Integer> applied = new LinkedHashMap<>();
+        final boolean autoCommit = connection.getAutoCommit();
+        // dropping a rebuilt SQLite table would delete or orphan the rows referencing it, so foreign keys are switched
+        // off around the transaction, where the pragma has no effect, and the rebuilt tables are checked before commit
+        final boolean foreignKeys = type == Database.Type.SqlLite && plan.stream().anyMatch(TableMigration::isAtomic) && foreignKeysEnforced();
+        if (foreignKeys) {
+            enforceForeignKeys(false);
+            if (foreignKeysEnforced()) {
+                throw new SQLException("foreign keys cannot be switched off inside a transaction, rebuilding a table needs them off");
+            }
+        }
+        connection.setAutoCommit(false);
+
+        try {
+            for (final TableMigration table : plan) {
+                own(table);
+                started.put(table, System.nanoTime());
+                final List<MigrationStatement> statements = new ArrayList<>();
+                for (final MigrationStatement statement : table.getStatements()) {
+                    (statement.isNonTransactional() ? deferred : statements).add(statement);
+                }
+
+                final Savepoint savepoint = connection.setSavepoint();
+                StatementFailure failure = executeUntilFailure(statements, result);
+                if (failure == null && foreignKeys && table.isAtomic()) {
+                    failure = checkForeignKeys(table);
+                }
+
+                if (failure == null) {
+                    statements.forEach(s -> result.statementExecuted());
+                    connection.releaseSavepoint(savepoint);
+                } else {
+                    connection.rollback(savepoint);
+                    logger.error("rolled back {} - {} failed with {}", table.getTableName(), failure.getStatement().trim(), failure.getException().getMessage());
+                    result.addFailure(failure);
+                    listener.statementFailed(failure);
+                    result.tableRolledBack(table.getTableName());
+                }
+                applied.put(table, table.getStatements().size() - statements.size());
+            }
+
+            connection.commit();
+        } catch (final SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } finally {
+                if (foreignKeys) {
+                    enforceForeignKeys(true);
+                }
+            }
+        }
+        // only reported once committed, when other connections can see the tables, and their deferred statements ran
+        applied.forEach(this::track);
+
+        // e.g. CREATE INDEX CONCURRENTLY, which refuses to run inside a transaction block
+        executeAll(deferred, result);
+    }
+
+    private boolean foreignKeysEnforced() throws SQLException {
+        try (final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery("PRAGMA foreign_keys")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private void enforceForeignKeys(final boolean enforce) throws SQLException {
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = " + (enforce ? "ON" : "OFF"));
+        }
+    }
+
+    /**
+     * Looks for rows of the rebuilt table whose references no longer resolve, or rows of other tables that no longer
+     * resolve to it. Violations elsewhere in the database are not the rebuild's and do not fail it.
+     */
+    private StatementFailure checkForeignKeys(final TableMigration table) throws SQLException {
+        final String check = "PRAGMA foreign_key_check";
+        final List<String> violations = new ArrayList<>();
+        try (final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery(check)) {
+            while (rs.next()) {
+                // table, rowid, parent, fkid
+                if (table.getTableName().equalsIgnoreCase(rs.getString(1)) || table.getTableName().equalsIgnoreCase(rs.getString(3))) {
+                    violations.add(rs.getString(1) + " row " + rs.getLong(2) + " references a missing " + rs.getString(3));
+                }
+            }
+        }
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return new StatementFailure(table.getTableName(), check,
+            new SQLIntegrityConstraintViolationException("rebuilding " + table.getTableName() + " broke foreign keys: " + String.join(", ", violations)));
+    }
+
+    private void executeAll(final List<MigrationStatement> statements, final MigrationResult result) throws SQLException {
+        final boolean canBatch = canBatch();
+        final List<MigrationStatement> run = new ArrayList<>();
+
+        for (final MigrationStatement statement : statements) {
+            if (canBatch && !runsAlone(statement)) {
+                run.add(statement);
+                if (run.size() == batchSize) {
+                    starting(run);
+                    executeBatch(run, result);
+                    ran(run);
+                    run.clear();
+                }
+            } else {
+                if (!run.isEmpty()) {
+                    starting(run);
+                    executeBatch(run, result);
+                    ran(run);
+                    run.clear();
+                }
+                starting(List.of(statement));
+                executeSingle(statement, result);
+                ran(List.of(statement));
+            }
+        }
+
+        if (!run.isEmpty()) {
+            starting(run);
+            executeBatch(run, result);
+            ran(run);
+        }
+    }
+
+    private void starting(final List<MigrationStatement> statements) {
+        final long start = System.nanoTime();
+        for (final MigrationStatement statement : statements) {
+            final TableMigration table = owners.get(statement);
+            if (table != null && remaining.containsKey(table)) {
+                started.putIfAbsent(table, start);
+            }
+        }
+    }
+
+    /**
+     * Reports the tables whose last statement was among these, failed or not.
+     */
+    private void ran(final List<MigrationStatement> statements) {
+        for (final MigrationStatement statement : statements) {
+            final TableMigration table = owners.get(statement);
+            final Integer left = table == null ? null : remaining.get(table);
+            if (left == null) {
+                continue;
+            }
+            if (left > 1) {
+                remaining.put(table, left - 1);
+            } else {
+                remaining.remove(table);
+                applied(table);
+            }
+        }
+    }
+
+    /**
+     * Reports the table once {@code statements} more of its statements ran, timed from the first of them starting
+     * unless the table started earlier. Tables sharing a batch share its time. A table with nothing left to run is
+     * reported right away.
+     */
+    private void track(final TableMigration table, final int statements) {
+        own(table);
+        if (statements == 0) {
+            applied(table);
+        } else {
+            remaining.put(table, statements);
+        }
+    }
+
+    /**
+     * Records the table as the owner of its statements and their fallbacks, so failures name their table.
+     */
+    private void own(final TableMigration table) {
+        for (final MigrationStatement statement : table.getStatements()) {
+            for (MigrationStatement tried = statement; tried != null; tried = tried.getFallback()) {
+                owners.put(tried, table);
+            }
+        }
+    }
+
+    private void applied(final TableMigration table) {
+        final Long start = started.remove(table);
+        listener.tableApplied(table, start == null ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static boolean runsAlone(final MigrationStatement statement) {
+        return statement.getFallback() != null || statement.isNonTransactional();
+    }
+
+    /**
+     * Runs the statements in order and stops at the first one that fails, leaving the caller to
+     * decide what happens to the statements that already ran.
+     */
+    private StatementFailure executeUntilFailure(final List<MigrationStatement> statements, final MigrationResult result) throws SQLException {
+        if (!canBatch() || statements.stream().anyMatch(MigrationExecutor::runsAlone)) {
+            for (final MigrationStatement statement : statements) {
+                final StatementFailure failure = tryExecute(statement, result);
+                if (failure != null) {
+                    return failure;
+                }
+            }
+            return null;
+        }
+
+        for (int from = 0; from < statements.size(); from += batchSize) {
+            final List<MigrationStatement> batch = statements.subList(from, Math.min(statements.size(), from + batchSize));
+            try (final Statement stmt = connection.createStatement()) {
+                for (final MigrationStatement statement : batch) {
+                    stmt.addBatch(statement.getSql());
+                }
+                final long start = System.nanoTime();
+                stmt.executeBatch();
+                listener.batchExecuted(batch.size(), Duration.ofNanos(System.nanoTime() - start));
+                result.batchExecuted();
+            } catch (final BatchUpdateException e) {
+                result.batchExecuted();
+                return failure(batch.get(firstFailure(batch, e)), e);
+            }
+        }
+        return null;
+    }
+
+    private boolean canBatch() throws SQLException {
+        return batchSize > 1 && connection.getMetaData().supportsBatchUpdates();
+    }
+
+    private void executeBatch(final List<MigrationStatement> statements, final MigrationResult result) throws SQLException {
+        try (final Statement stmt = connection.createStatement()) {
+            for (final MigrationStatement statement : statements) {
+                stmt.addBatch(statement.getSql());
+            }
+
+            try {
+                final long start = System.nanoTime();
+                stmt.executeBatch();
+                listener.batchExecuted(statements.size(), Duration.ofNanos(System.nanoTime() - start));
+                statements.forEach(s -> result.statementExecuted());
+                result.batchExecuted();
+            } catch (final BatchUpdateException e) {
+                result.batchExecuted();
+                recover(statements, e, result);
+            }
+        }
+    }
+
+    private void recover(final List<MigrationStatement> statements, final BatchUpdateException e, final MigrationResult result) {
+        final int[] updateCounts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+
+        if (updateCounts.length == statements.size()) {
+            // the driver kept going after the failure and flagged every statement that did not run
+            for (int i = 0; i < statements.size(); i++) {
+                if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    fail(failure(statements.get(i), e), result);
+                } else {
+                    result.statementExecuted();
+                }
+            }
+            return;
+        }
+
+        // the driver stopped at the first failure, everything before it has been applied
+        for (int i = 0; i < updateCounts.length; i++) {
+            result.statementExecuted();
+        }
+        fail(failure(statements.get(updateCounts.length), e), result);
+
+        for (final MigrationStatement statement : statements.subList(updateCounts.length + 1, statements.size())) {
+            executeSingle(statement, result);
+        }
+    }
+
+    private static int firstFailure(final List<MigrationStatement> statements, final BatchUpdateException e) {
+        final int[] updateCounts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+        if (updateCounts.length == statements.size()) {
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+        return updateCounts.length;
+    }
+
+    void executeSingle(final MigrationStatement statement, final MigrationResult result) {
+        final StatementFailure failure = tryExecute(statement, result);
+        if (failure == null) {
+            result.statementExecuted();
+        } else {
+            fail(failure, result);
+        }
+    }
+
+    /**
+     * Executes the statement, walking down its fallbacks until one is accepted.
+     *
+     * @return the failure of the last statement tried, or null when one of them succeeded
+     */
+    private StatementFailure tryExecute(final MigrationStatement statement, final MigrationResult result) {
+        try (final Statement stmt = connection.createStatement()) {
+            final long start = System.nanoTime();
+            stmt.execute(statement.getSql());
+            listener.statementExecuted(statement, Duration.ofNanos(System.nanoTime() - start));
+            if (statement.getStrategy() != null) {
+                logger.info("{} - applied with {}", statement.getSql(), statement.getStrategy());
+                result.strategyApplied(statement.getSql(), statement.getStrategy());
+            }
+            return null;
+        } catch (final SQLException e) {
+            if (statement.getFallback() == null) {
+                return failure(statement, e);
+            }
+            logger.warn("{} rejected ({}), falling back to {}", statement.getStrategy(), e.getMessage(), statement.getFallback().getStrategy());
+            return tryExecute(statement.getFallback(), result);
+        }
+    }
+
+    private StatementFailure failure(final MigrationStatement statement, final SQLException e) {
+        final TableMigration table = owners.get(statement);
+        return new StatementFailure(table == null ? null : table.getTableName(), statement.getSql(), e);
+    }
+
+    private void fail(final StatementFailure failure, final MigrationResult result) {
+        logger.error("{} - {}", failure.getStatement().trim(), failure.getException().getMessage());
+        result.addFailure(failure);
+        listener.statementFailed(failure);
+    }
+}
@@ -0,0 +1,162 @@
+package dev.snowz.ormlitemigrator;
+
+import dev.snowz.ormlitemigrator.exception.MigrationException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A migration running in the background, see {@link SchemaInterpreter#migrateAsync()}. Besides the overall result
+ * it hands out a future per table, so an application can start using the tables that are done while slower ones
+ * are still being altered.
+ */
+public class MigrationFuture extends CompletableFuture<MigrationResult> {
+
+    private final Map<String, CompletableFuture<Void>> tables = new HashMap<>();
+    // the first failure per table
+    private final Map<String, StatementFailure> failures = new ConcurrentHashMap<>();
+    private boolean finished;
+    private MigrationResult result;
+    private Throwable exception;
+
+    MigrationFuture(final Collection<String> tableNames) {
+        for (final String tableName : tableNames) {
+            tables.put(key(tableName), new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Completes once the table is migrated: right after diffing when it is already up to date, as soon as its own
+     * statements are applied with {@link SchemaInterpreter#parallelApply}, and otherwise once the transaction or
+     * the batches holding its statements are done. Fails with a {@link MigrationException} when one of its
+     * statements failed, and with the migration's exception when the whole migration failed or was skipped.
+     *
+     * @throws IllegalArgumentException when no queued model maps to the table
+     */
+    public synchronized CompletableFuture<Void> table(final String tableName) {
+        final CompletableFuture<Void> table = tables.get(key(tableName));
+        if (table == null) {
+            throw new IllegalArgumentException(tableName + " is not a table of the migration");
+        }
+        return table;
+    }
+
+    /**
+     * Forwards to the interpreter's listener and completes the table futures as the migration goes.
+     */
+    MigrationListener tracking(final MigrationListener listener) {
+        return new MigrationListener() {
+            @Override
+            public void phaseFinished(final MigrationPhase phase, final Duration elapsed) {
+                listener.phaseFinished(phase, elapsed);
+            }
+
+            @Override
+            public void tablePlanned(final String tableName, final Duration elapsed) {
+                listener.tablePlanned(tableName, elapsed);
+            }
+
+            @Override
+            public void planned(final List<TableMigration> plan) {
+                listener.planned(plan);
+                MigrationFuture.this.planned(plan);
+            }
+
+            @Override
+            public void tableApplied(final TableMigration table, final Duration elapsed) {
+                listener.tableApplied(table, elapsed);
+                MigrationFuture.this.tableApplied(table);
+            }
+
+            @Override
+            public void statementExecuted(final MigrationStatement statement, final Duration elapsed) {
+                listener.statementExecuted(statement, elapsed);
+            }
+
+            @Override
+            public void batchExecuted(final int statements, final Duration elapsed) {
+                listener.batchExecuted(statements, elapsed);
+            }
+
+            @Override
+            public void statementFailed(final StatementFailure failure) {
+                if (failure.getTableName() != null) {
+                    failures.putIfAbsent(key(failure.getTableName()), failure);
+                }
+                listener.statementFailed(failure);
+            }
+
+            @Override
+            public void rowsExamined(final String tableName, final long rows) {
+                listener.rowsExamined(tableName, rows);
+            }
+
+            @Override
+            public void migrationFinished(final MigrationResult result) {
+                listener.migrationFinished(result);
+            }
+        };
+    }
+
+    private synchronized void planned(final List<TableMigration> plan) {
+        final Set<String> planned = new HashSet<>();
+        for (final TableMigration tableMigration : plan) {
+            planned.add(key(tableMigration.getTableName()));
+        }
+        tables.forEach((key, table) -> {
+            if (!planned.contains(key)) {
+                table.complete(null);
+            }
+        });
+    }
+
+    private synchronized void tableApplied(final TableMigration tableMigration) {
+        final String key = key(tableMigration.getTableName());
+        final CompletableFuture<Void> table = tables.get(key);
+        if (table == null) {
+            return;
+        }
+        final StatementFailure failure = failures.get(key);
+        if (failure == null) {
+            table.complete(null);
+        } else {
+            table.completeExceptionally(new MigrationException(failure.getException()));
+        }
+    }
+
+    /**
+     * Settles the tables not completed yet, then the migration itself.
+     */
+    void finish(final MigrationResult result, final Throwable exception) {
+        synchronized (this) {
+            this.finished = true;
+            this.result = result;
+            this.exception = exception;
+            tables.forEach(this::settle);
+        }
+        if (exception == null) {
+            complete(result);
+        } else {
+            completeExceptionally(exception);
+        }
+    }
+
+    private void settle(final String key, final CompletableFuture<Void> table) {
+        final StatementFailure statementFailure = failures.get(key);
+        final Throwable failure = exception != null ? exception
+            : result.isSkipped() ? new IllegalStateException("migration skipped, another node holds the migration lock")
+            : statementFailure != null ? new MigrationException(statementFailure.getException())
+            : null;
+        if (failure == null) {
+            table.complete(null);
+        } else {
+            table.completeExceptionally(failure);
+        }
+    }
+
+    private static String key(final String tableName) {
+        return tableName.toUpperCase(Locale.ROOT);
+    }
+}
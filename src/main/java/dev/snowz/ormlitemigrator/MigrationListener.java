@@ -0,0 +1,65 @@
+package dev.snowz.ormlitemigrator;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Receives timings and counts while a migration is planned and applied, e.g. to feed a metrics registry.
+ * Every method defaults to doing nothing, implement the ones you need. Callbacks run on the thread doing the
+ * work, which is a pool thread for tables planned with {@link SchemaInterpreter#parallel} or applied with
+ * {@link SchemaInterpreter#parallelApply}, and must be fast.
+ */
+public interface MigrationListener {
+
+    /**
+     * The default listener, which ignores everything.
+     */
+    MigrationListener NOOP = new MigrationListener() {
+    };
+
+    default void phaseFinished(final MigrationPhase phase, final Duration elapsed) {
+    }
+
+    /**
+     * A table was introspected and diffed. Models sharing a table are reported one by one.
+     */
+    default void tablePlanned(final String tableName, final Duration elapsed) {
+    }
+
+    /**
+     * The plan was diffed and is about to be applied. Queued tables missing from it are already up to date.
+     */
+    default void planned(final List<TableMigration> plan) {
+    }
+
+    /**
+     * All statements of a table ran, some of them possibly failed. Timed from its first statement starting, so
+     * tables sharing a JDBC batch share its time; statements applied in a transaction are reported once it commits.
+     */
+    default void tableApplied(final TableMigration table, final Duration elapsed) {
+    }
+
+    /**
+     * A statement that ran on its own succeeded.
+     */
+    default void statementExecuted(final MigrationStatement statement, final Duration elapsed) {
+    }
+
+    /**
+     * A JDBC batch of {@code statements} statements succeeded.
+     */
+    default void batchExecuted(final int statements, final Duration elapsed) {
+    }
+
+    default void statementFailed(final StatementFailure failure) {
+    }
+
+    /**
+     * Rows a backfill chunk went through.
+     */
+    default void rowsExamined(final String tableName, final long rows) {
+    }
+
+    default void migrationFinished(final MigrationResult result) {
+    }
+}
@@ -0,0 +1,389 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets one node of a cluster migrate at a time. MySQL and MariaDB use {@code GET_LOCK} and PostgreSQL an advisory
+ * lock, both held by the migration's connection and released by the server if that connection dies. A SQLite file
+ * is locked through a lock file next to it, released by the operating system if the process dies; a heartbeat could
+ * not renew a lease there, since the migration's write transactions lock the whole file. Elsewhere, and whenever
+ * those are not available, a row in {@value #TABLE_NAME} is the lock. That row carries a lease that a heartbeat on a
+ * second connection keeps extending while the migration runs, so the lock of a crashed node expires and is taken over.
+ */
+class MigrationLock {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationLock.class.getSimpleName());
+
+    static final String TABLE_NAME = "ormlite_migrator_lock";
+
+    private static final Duration MIN_BACKOFF = Duration.ofMillis(50);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(2);
+    // longer names make GET_LOCK fail
+    private static final int MAX_SESSION_NAME_LENGTH = 64;
+
+    private enum Strategy {
+        SESSION, ADVISORY, FILE, TABLE
+    }
+
+    private final Database database;
+    private final Connection connection;
+    private final DataSource heartbeatSource;
+    private final String name;
+    private final Duration lease;
+    private final String owner;
+    private Strategy strategy;
+    private ScheduledExecutorService heartbeat;
+    private Connection heartbeatConnection;
+    private String heartbeatSchema;
+    private FileChannel lockFile;
+    private FileLock fileLock;
+
+    private MigrationLock(final Database database, final Connection connection, final DataSource heartbeatSource, final String name, final Duration lease) {
+        this.database = database;
+        this.connection = connection;
+        this.heartbeatSource = heartbeatSource != null ? heartbeatSource : database.getDataSource();
+        this.name = name;
+        this.lease = lease;
+        this.owner = ProcessHandle.current().pid() + "@" + UUID.randomUUID();
+        this.strategy = database.getType() == Database.Type.MySQL || database.getType() == Database.Type.MariaDB ? Strategy.SESSION
+            : database.getType() == Database.Type.Postgres ? Strategy.ADVISORY
+            : database.getType() == Database.Type.SqlLite ? Strategy.FILE
+            : Strategy.TABLE;
+    }
+
+    /**
+     * Tries to take the lock until {@code wait} has passed, backing off exponentially between attempts.
+     *
+     * @return the held lock, or null when another node still holds it
+     */
+    static MigrationLock acquire(final Database database, final Connection connection, final String name, final Duration lease, final Duration wait) throws SQLException {
+        return acquire(database, connection, null, name, lease, wait);
+    }
+
+    /**
+     * Like {@link #acquire(Database, Connection, String, Duration, Duration)}, renewing a table lock on connections
+     * from {@code heartbeatSource}, e.g. when the database is a connection of that data source switched to a schema.
+     */
+    static MigrationLock acquire(final Database database, final Connection connection, final DataSource heartbeatSource, final String name, final Duration lease, final Duration wait) throws SQLException {
+        final MigrationLock lock = new MigrationLock(database, connection, heartbeatSource, name, lease);
+        final long deadline = System.nanoTime() + wait.toNanos();
+        long backoff = MIN_BACKOFF.toMillis();
+
+        while (true) {
+            if (lock.tryAcquire()) {
+                logger.info("acquired the migration lock {} ({})", name, lock.strategy);
+                try {
+                    lock.startHeartbeat();
+                } catch (final SQLException e) {
+                    lock.release();
+                    throw e;
+                }
+                return lock;
+            }
+
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+
+            logger.info("migration lock {} is held by another node, retrying", name);
+            sleep(Math.min(remaining, ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1)));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF.toMillis());
+        }
+    }
+
+    void release() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+
+        try {
+            switch (strategy) {
+                case SESSION:
+                    query("SELECT RELEASE_LOCK(?)", sessionName(name));
+                    break;
+                case ADVISORY:
+                    query("SELECT pg_advisory_unlock(?)", key());
+                    break;
+                case FILE:
+                    fileLock.release();
+                    lockFile.close();
+                    break;
+                default:
+                    try (final PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + TABLE_NAME + " WHERE lock_name = ? AND owner = ?")) {
+                        stmt.setString(1, name);
+                        stmt.setString(2, owner);
+                        stmt.executeUpdate();
+                    }
+                    commit();
+                    break;
+            }
+            logger.info("released the migration lock {}", name);
+        } catch (final SQLException | IOException e) {
+            // a table lock expires with its lease, a session lock with the connection, a file lock with the process
+            logger.error("could not release the migration lock {} - {}", name, e.getMessage());
+        } finally {
+            closeHeartbeatConnection();
+        }
+    }
+
+    private boolean tryAcquire() throws SQLException {
+        if (strategy == Strategy.FILE) {
+            final Path path = sqliteFile();
+            if (path != null) {
+                return tryAcquireFile(path);
+            }
+            // an in-memory database, other processes cannot open it
+            strategy = Strategy.TABLE;
+        }
+        if (strategy != Strategy.TABLE) {
+            try {
+                return strategy == Strategy.SESSION
+                    ? Long.valueOf(1).equals(query("SELECT GET_LOCK(?, 0)", sessionName(name)))
+                    : Boolean.TRUE.equals(query("SELECT pg_try_advisory_lock(?)", key()));
+            } catch (final SQLException e) {
+                // a failed query aborts an open PostgreSQL transaction
+                rollback();
+                logger.debug("{} lock not available, falling back to {} - {}", strategy, TABLE_NAME, e.getMessage());
+                strategy = Strategy.TABLE;
+            }
+        }
+        return tryAcquireRow();
+    }
+
+    private boolean tryAcquireRow() throws SQLException {
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "lock_name VARCHAR(128) NOT NULL PRIMARY KEY, " +
+                "owner VARCHAR(128) NOT NULL, " +
+                "expires_at BIGINT NOT NULL)");
+        }
+
+        final long now = System.currentTimeMillis();
+        try (final PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + TABLE_NAME + " WHERE lock_name = ? AND expires_at < ?")) {
+            stmt.setString(1, name);
+            stmt.setLong(2, now);
+            if (stmt.executeUpdate() > 0) {
+                logger.warn("taking over the expired migration lock {}", name);
+            }
+        }
+
+        try (final PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + TABLE_NAME + " (lock_name, owner, expires_at) VALUES (?, ?, ?)")) {
+            stmt.setString(1, name);
+            stmt.setString(2, owner);
+            stmt.setLong(3, now + lease.toMillis());
+            stmt.executeUpdate();
+            commit();
+            return true;
+        } catch (final SQLException e) {
+            // the primary key is taken, another node holds the lock
+            rollback();
+            return false;
+        }
+    }
+
+    /**
+     * Locks a byte of the lock file derived from the name, so every lock name of the database shares one file. The
+     * lock belongs to the JVM, so another thread of this process holding it shows up as an overlapping lock. The file
+     * is left in place on release: a process that opened it before it was deleted would lock the unlinked file while
+     * the next one creates and locks a new one, and both would hold the lock.
+     */
+    private boolean tryAcquireFile(final Path path) throws SQLException {
+        final Path file = path.resolveSibling(path.getFileName() + "-migrator.lock");
+        try {
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock acquired = null;
+            try {
+                acquired = channel.tryLock(key() & Long.MAX_VALUE, 1, false);
+            } catch (final OverlappingFileLockException e) {
+                // held by another thread of this process
+            }
+            if (acquired == null) {
+                channel.close();
+                return false;
+            }
+            lockFile = channel;
+            fileLock = acquired;
+            return true;
+        } catch (final IOException e) {
+            throw new SQLException("could not lock " + file, e);
+        }
+    }
+
+    /**
+     * The file of the SQLite database, or null when it lives in memory.
+     */
+    private Path sqliteFile() throws SQLException {
+        String file = connection.getMetaData().getURL().substring("jdbc:sqlite:".length());
+        if (file.contains("mode=memory")) {
+            return null;
+        }
+        file = file.startsWith("file:") ? file.substring("file:".length()) : file;
+        file = file.contains("?") ? file.substring(0, file.indexOf('?')) : file;
+        return file.isEmpty() || file.equals(":memory:") ? null : Path.of(file).toAbsolutePath();
+    }
+
+    /**
+     * Extends the lease of a table lock on a connection of its own, since the migration's connection may be inside a
+     * long transaction whose writes other nodes cannot see. That connection comes from the heartbeat's data source,
+     * the database's or its connection string, is switched to the schema of the migration's connection, and has to
+     * see and renew the row right away: a lock that cannot be renewed would expire under a long migration, so it is
+     * refused.
+     */
+    private void startHeartbeat() throws SQLException {
+        if (strategy != Strategy.TABLE) {
+            return;
+        }
+
+        final String connectionString = database.getConnectionString();
+        heartbeatConnection = heartbeatSource != null ? heartbeatSource.getConnection()
+            : connectionString != null && !privateInMemory(connectionString) ? DriverManager.getConnection(connectionString)
+            : null;
+        if (heartbeatConnection != null) {
+            // the row lives in the schema the migration runs in, e.g. a tenant's
+            final String schema = connection.getSchema();
+            final String current = heartbeatConnection.getSchema();
+            if (schema != null && !schema.equals(current)) {
+                heartbeatConnection.setSchema(schema);
+                heartbeatSchema = current;
+            }
+        }
+        if (heartbeatConnection == null || extendLease() == 0) {
+            throw new SQLException("the migration lock " + name + " cannot be renewed, no second connection to the database sees "
+                + TABLE_NAME + "; build the database on a DataSource or a connection string other connections can open");
+        }
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "ormlite-migrator-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, lease.toMillis() / 3);
+        heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void renew() {
+        try {
+            if (extendLease() == 0) {
+                logger.error("migration lock {} was lost, its lease expired", name);
+            }
+        } catch (final SQLException e) {
+            logger.warn("could not renew the migration lock {} - {}", name, e.getMessage());
+        }
+    }
+
+    private int extendLease() throws SQLException {
+        try (final PreparedStatement stmt = heartbeatConnection.prepareStatement("UPDATE " + TABLE_NAME + " SET expires_at = ? WHERE lock_name = ? AND owner = ?")) {
+            // a renewal stuck behind a lock is retried on the next beat rather than holding up the heartbeat
+            stmt.setQueryTimeout((int) Math.max(1, lease.toSeconds() / 3));
+            stmt.setLong(1, System.currentTimeMillis() + lease.toMillis());
+            stmt.setString(2, name);
+            stmt.setString(3, owner);
+            final int updated = stmt.executeUpdate();
+            if (!heartbeatConnection.getAutoCommit()) {
+                heartbeatConnection.commit();
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Connection strings that open a new, empty database on every connection.
+     */
+    private static boolean privateInMemory(final String connectionString) {
+        final String url = connectionString.toLowerCase(Locale.ROOT);
+        return url.equals("jdbc:h2:mem:") || url.startsWith("jdbc:h2:mem:;")
+            || url.startsWith("jdbc:sqlite:") && (url.equals("jdbc:sqlite:") || url.contains(":memory:") || url.contains("mode=memory")) && !url.contains("cache=shared");
+    }
+
+    private void closeHeartbeatConnection() {
+        if (heartbeatConnection == null) {
+            return;
+        }
+        try {
+            // switched back before it returns to a pool
+            if (heartbeatSchema != null) {
+                heartbeatConnection.setSchema(heartbeatSchema);
+            }
+        } catch (final SQLException e) {
+            logger.warn("could not switch the lock heartbeat connection back to {} - {}", heartbeatSchema, e.getMessage());
+        }
+        try {
+            heartbeatConnection.close();
+        } catch (final SQLException e) {
+            logger.warn("could not close the lock heartbeat connection - {}", e.getMessage());
+        }
+        heartbeatConnection = null;
+    }
+
+    private Object query(final String sql, final Object parameter) throws SQLException {
+        try (final PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setObject(1, parameter);
+            try (final ResultSet rs = stmt.executeQuery()) {
+                final Object value = rs.next() ? rs.getObject(1) : null;
+                return value instanceof Number ? (Object) ((Number) value).longValue() : value;
+            }
+        }
+    }
+
+    /**
+     * The name for {@code GET_LOCK}, which refuses names longer than 64 characters. Longer names keep a prefix and
+     * end in a hash of the whole name, so they stay distinct.
+     */
+    static String sessionName(final String name) {
+        if (name.length() <= MAX_SESSION_NAME_LENGTH) {
+            return name;
+        }
+        final String hash = String.format("%016x", key(name));
+        return name.substring(0, MAX_SESSION_NAME_LENGTH - hash.length() - 1) + "_" + hash;
+    }
+
+    /**
+     * Advisory locks take a 64-bit key, derived from the name so every node computes the same one.
+     */
+    private long key() {
+        return key(name);
+    }
+
+    private static long key(final String name) {
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+    }
+
+    private void commit() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private void rollback() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+    }
+
+    private static void sleep(final long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for the migration lock", e);
+        }
+    }
+}
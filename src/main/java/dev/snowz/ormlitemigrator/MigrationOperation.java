@@ -0,0 +1,30 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * One schema change of a migration plan, before it is rendered to SQL. Operations are what the plan optimizer
+ * merges, deduplicates and reorders, and what costs are estimated for.
+ */
+public abstract class MigrationOperation {
+
+    private final String tableName;
+    private OperationCost cost = OperationCost.UNKNOWN;
+
+    protected MigrationOperation(final String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * The estimated cost, {@link OperationCost#UNKNOWN} unless cost estimation is enabled on the interpreter.
+     */
+    public OperationCost getCost() {
+        return cost;
+    }
+
+    void setCost(final OperationCost cost) {
+        this.cost = cost;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * The steps of {@link SchemaInterpreter#migrate()}, in the order they run.
+ */
+public enum MigrationPhase {
+    /**
+     * Waiting for the migration lock, only when {@link SchemaInterpreter#lock} is set.
+     */
+    LOCK,
+    /**
+     * Hashing the models and comparing the hash with the stored fingerprint.
+     */
+    FINGERPRINT,
+    /**
+     * Reading the bulk schema snapshot. Without bulk introspection every table is introspected during {@link #DIFF}.
+     */
+    INTROSPECTION,
+    /**
+     * Introspecting and diffing every table, optimizing and rendering the plan. Includes {@link #INTROSPECTION}.
+     */
+    DIFF,
+    /**
+     * Applying the plan's statements.
+     */
+    EXECUTION,
+    /**
+     * Filling and tightening new NOT NULL columns.
+     */
+    BACKFILL
+}
@@ -0,0 +1,138 @@
+package dev.snowz.ormlitemigrator;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Outcome of applying a migration: how many statements ran, which ones failed and how long it took.
+ */
+public class MigrationResult {
+
+    private int executedStatements;
+    private int batches;
+    private final List<StatementFailure> failures = new ArrayList<>();
+    private final List<String> rolledBackTables = new ArrayList<>();
+    private final Map<String, String> appliedStrategies = new LinkedHashMap<>();
+    private final Map<String, Long> backfilledRows = new LinkedHashMap<>();
+    private Duration elapsed = Duration.ZERO;
+    private boolean unchanged;
+    private boolean skipped;
+
+    public int getExecutedStatements() {
+        return executedStatements;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public List<StatementFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * Tables whose statements were rolled back to their savepoint when applying transactionally.
+     */
+    public List<String> getRolledBackTables() {
+        return Collections.unmodifiableList(rolledBackTables);
+    }
+
+    /**
+     * Online DDL statements that were applied, with the strategy the database accepted for each of them.
+     */
+    public Map<String, String> getAppliedStrategies() {
+        return Collections.unmodifiableMap(appliedStrategies);
+    }
+
+    /**
+     * Rows filled per backfilled column, keyed by {@code table.column}.
+     */
+    public Map<String, Long> getBackfilledRows() {
+        return Collections.unmodifiableMap(backfilledRows);
+    }
+
+    /**
+     * True when the stored schema fingerprint matched and the migration was skipped without introspecting.
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * True when another node held the migration lock for longer than the configured wait and nothing was done.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    void statementExecuted() {
+        executedStatements++;
+    }
+
+    void batchExecuted() {
+        batches++;
+    }
+
+    void addFailure(final StatementFailure failure) {
+        failures.add(failure);
+    }
+
+    void tableRolledBack(final String tableName) {
+        rolledBackTables.add(tableName);
+    }
+
+    void strategyApplied(final String statement, final String strategy) {
+        appliedStrategies.put(statement, strategy);
+    }
+
+    void rowsBackfilled(final String column, final long rows) {
+        backfilledRows.merge(column, rows, Long::sum);
+    }
+
+    void setUnchanged(final boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Adds up the result of a part of the plan that was applied separately.
+     */
+    void merge(final MigrationResult other) {
+        executedStatements += other.executedStatements;
+        batches += other.batches;
+        failures.addAll(other.failures);
+        rolledBackTables.addAll(other.rolledBackTables);
+        appliedStrategies.putAll(other.appliedStrategies);
+        other.backfilledRows.forEach(this::rowsBackfilled);
+    }
+
+    void setSkipped(final boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    void setElapsed(final Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationResult{" +
+            "executedStatements=" + executedStatements +
+            ", batches=" + batches +
+            ", failures=" + failures +
+            ", rolledBackTables=" + rolledBackTables +
+            ", appliedStrategies=" + appliedStrategies +
+            ", backfilledRows=" + backfilledRows +
+            ", elapsed=" + elapsed +
+            ", unchanged=" + unchanged +
+            ", skipped=" + skipped +
+            '}';
+    }
+}
@@ -0,0 +1,51 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * One statement of a migration plan. Online DDL statements carry the strategy they were rendered with
+ * and the less restrictive statement to fall back to when the database rejects it.
+ */
+public class MigrationStatement {
+
+    private final String sql;
+    private final String strategy;
+    private final MigrationStatement fallback;
+    private final boolean nonTransactional;
+
+    public MigrationStatement(final String sql) {
+        this(sql, null, null, false);
+    }
+
+    public MigrationStatement(final String sql, final String strategy, final MigrationStatement fallback, final boolean nonTransactional) {
+        this.sql = sql;
+        this.strategy = strategy;
+        this.fallback = fallback;
+        this.nonTransactional = nonTransactional;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The online DDL strategy, e.g. {@code ALGORITHM=INSTANT}, or null for a plain statement.
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public MigrationStatement getFallback() {
+        return fallback;
+    }
+
+    /**
+     * True for statements that cannot run inside a transaction, such as {@code CREATE INDEX CONCURRENTLY}.
+     */
+    public boolean isNonTransactional() {
+        return nonTransactional;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
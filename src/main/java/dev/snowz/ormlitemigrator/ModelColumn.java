@@ -0,0 +1,119 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A compiled {@code @DatabaseField}: the column name, its constraints and its rendered column definition for
+ * every supported database type.
+ */
+public class ModelColumn {
+
+    private final String fieldName;
+    private final boolean nullable;
+    private final boolean id;
+    private final boolean generatedId;
+    private final Map<Database.Type, String> definitions;
+    private final Map<Database.Type, String> nullableDefinitions;
+    private final Map<Database.Type, String> backfillValues;
+
+    public ModelColumn(final String fieldName, final boolean nullable, final boolean id, final boolean generatedId, final Map<Database.Type, String> definitions) {
+        this(fieldName, nullable, id, generatedId, definitions, definitions, new EnumMap<>(Database.Type.class));
+    }
+
+    public ModelColumn(final String fieldName, final boolean nullable, final boolean id, final boolean generatedId, final Map<Database.Type, String> definitions,
+                       final Map<Database.Type, String> nullableDefinitions, final Map<Database.Type, String> backfillValues) {
+        this.fieldName = fieldName;
+        this.nullable = nullable;
+        this.id = id;
+        this.generatedId = generatedId;
+        this.definitions = Collections.unmodifiableMap(copy(definitions));
+        this.nullableDefinitions = Collections.unmodifiableMap(copy(nullableDefinitions));
+        this.backfillValues = Collections.unmodifiableMap(copy(backfillValues));
+    }
+
+    private static Map<Database.Type, String> copy(final Map<Database.Type, String> values) {
+        return values.isEmpty() ? new EnumMap<>(Database.Type.class) : new EnumMap<>(values);
+    }
+
+    static ModelColumn compile(final IncomingDatabaseFieldType field) {
+        final Map<Database.Type, String> definitions = new EnumMap<>(Database.Type.class);
+        final Map<Database.Type, String> nullableDefinitions = new EnumMap<>(Database.Type.class);
+        final Map<Database.Type, String> backfillValues = new EnumMap<>(Database.Type.class);
+        for (final Database.Type type : Database.Type.values()) {
+            definitions.put(type, field.generateStatement(type));
+            nullableDefinitions.put(type, field.generateNullableStatement(type));
+            final String backfillValue = field.backfillValue(type);
+            if (backfillValue != null) {
+                backfillValues.put(type, backfillValue);
+            }
+        }
+        return new ModelColumn(
+            field.getFieldName(),
+            field.getDatabaseField().canBeNull(),
+            field.getDatabaseField().id(),
+            field.getDatabaseField().generatedId(),
+            definitions,
+            nullableDefinitions,
+            backfillValues
+        );
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public boolean isId() {
+        return id;
+    }
+
+    public boolean isGeneratedId() {
+        return generatedId;
+    }
+
+    /**
+     * The column definition used in CREATE TABLE and ADD COLUMN, e.g. {@code name VARCHAR(255) NOT NULL}.
+     */
+    public String getDefinition(final Database.Type type) {
+        return definitions.get(type);
+    }
+
+    /**
+     * The column definition without NOT NULL, used to add the column before existing rows are backfilled.
+     */
+    public String getNullableDefinition(final Database.Type type) {
+        return nullableDefinitions.getOrDefault(type, definitions.get(type));
+    }
+
+    /**
+     * The column type alone, e.g. {@code VARCHAR(255)}, without the column name and constraints.
+     */
+    public String getSqlType(final Database.Type type) {
+        final String definition = getNullableDefinition(type);
+        final String sqlType = definition.substring(Math.min(definition.length(), fieldName.length())).trim();
+        return sqlType.endsWith(" NOT NULL") ? sqlType.substring(0, sqlType.length() - " NOT NULL".length()) : sqlType;
+    }
+
+    /**
+     * The SQL literal existing rows are filled with when this NOT NULL column is added, or null when the
+     * column does not need a backfill.
+     */
+    public String getBackfillValue(final Database.Type type) {
+        return backfillValues.get(type);
+    }
+
+    @Override
+    public String toString() {
+        return "ModelColumn{" +
+            "fieldName='" + fieldName + '\'' +
+            ", nullable=" + nullable +
+            ", id=" + id +
+            ", generatedId=" + generatedId +
+            '}';
+    }
+}
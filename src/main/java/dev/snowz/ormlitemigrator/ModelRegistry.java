@@ -0,0 +1,109 @@
+package dev.snowz.ormlitemigrator;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import dev.snowz.ormlitemigrator.exception.NoFieldDefinedException;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Process-wide cache of compiled models. Each class is reflected on and rendered once, the first time it is
+ * looked up, and the result is shared by every {@link SchemaInterpreter}. Models generated at build time by
+ * the annotation processor are registered up front and never reflected on.
+ */
+public final class ModelRegistry {
+
+    // keyed by ClassValue rather than a map, so registered models do not keep their class loader alive
+    private static final ClassValue<AtomicReference<CompiledModel>> PRECOMPILED = new ClassValue<>() {
+        @Override
+        protected AtomicReference<CompiledModel> computeValue(final Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+
+    private enum Failure {
+        NO_TABLE_ANNOTATION, NO_FIELD_DEFINED
+    }
+
+    private static final ClassValue<Object> COMPILED = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> type) {
+            try {
+                return compile(type);
+            } catch (final NoFieldDefinedException e) {
+                // ClassValue cannot throw checked exceptions, the failure is cached and get() throws a fresh one
+                return Failure.NO_FIELD_DEFINED;
+            } catch (final TableAnnotationNotFound e) {
+                return Failure.NO_TABLE_ANNOTATION;
+            }
+        }
+    };
+
+    private ModelRegistry() {
+    }
+
+    public static CompiledModel get(final Class<?> model) throws NoFieldDefinedException, TableAnnotationNotFound {
+        final CompiledModel precompiled = PRECOMPILED.get(model).get();
+        if (precompiled != null) {
+            return precompiled;
+        }
+
+        final Object compiled = COMPILED.get(model);
+        if (compiled == Failure.NO_FIELD_DEFINED) {
+            throw new NoFieldDefinedException();
+        }
+        if (compiled == Failure.NO_TABLE_ANNOTATION) {
+            throw new TableAnnotationNotFound();
+        }
+        return (CompiledModel) compiled;
+    }
+
+    public static void register(final CompiledModel model) {
+        PRECOMPILED.get(model.getModelClass()).set(model);
+    }
+
+    /**
+     * Registers every model generated by the annotation processor that is visible to the class loader.
+     *
+     * @return the registered models, in the order they were generated
+     */
+    public static List<CompiledModel> loadPrecompiled(final ClassLoader classLoader) {
+        final List<CompiledModel> models = new ArrayList<>();
+        for (final PrecompiledModels precompiledModels : ServiceLoader.load(PrecompiledModels.class, classLoader)) {
+            for (final CompiledModel model : precompiledModels.models()) {
+                register(model);
+                models.add(model);
+            }
+        }
+        return models;
+    }
+
+    /**
+     * The table a model class maps to: its {@code @DatabaseTable} name, or its simple name.
+     */
+    static String tableName(final Class<?> model) {
+        final DatabaseTable dTable = model.getAnnotation(DatabaseTable.class);
+        return dTable == null || dTable.tableName().isEmpty() ? model.getSimpleName() : dTable.tableName();
+    }
+
+    private static CompiledModel compile(final Class<?> model) throws NoFieldDefinedException, TableAnnotationNotFound {
+        if (model.getAnnotation(DatabaseTable.class) == null) {
+            throw new TableAnnotationNotFound();
+        }
+        final String tableName = tableName(model);
+
+        final List<IncomingDatabaseFieldType> incomingFields = Arrays.
+            stream(model.getDeclaredFields()).
+            filter(f -> f.getAnnotation(DatabaseField.class) != null).
+            map(f -> new IncomingDatabaseFieldType(f.getName(), f.getAnnotation(DatabaseField.class), f.getType())).
+            collect(Collectors.toList());
+
+        if (incomingFields.isEmpty()) {
+            throw new NoFieldDefinedException();
+        }
+
+        return CompiledModel.of(model, tableName, incomingFields);
+    }
+}
@@ -0,0 +1,104 @@
+package dev.snowz.ormlitemigrator;
+
+import java.time.Duration;
+
+/**
+ * Rough cost of applying an operation: how many rows and bytes it reads or rewrites, how the database applies it
+ * and what it locks meanwhile. Estimated from table statistics, so good for telling a metadata-only change from a
+ * table rebuild; the duration is only as good as the scan rate it was derived from. Row and byte counts are -1 and
+ * the duration is null when unknown.
+ */
+public class OperationCost {
+
+    /**
+     * How the database applies an operation, from cheapest to most expensive.
+     */
+    public enum Kind {
+        /**
+         * Only the catalog changes.
+         */
+        INSTANT,
+        /**
+         * The table is read or updated where it is, e.g. to build an index or validate a constraint.
+         */
+        IN_PLACE,
+        /**
+         * The table is copied into a new one.
+         */
+        REBUILD
+    }
+
+    /**
+     * What other sessions wait for while the operation runs.
+     */
+    public enum LockScope {
+        NONE, WRITES, ALL
+    }
+
+    public static final OperationCost FREE = new OperationCost(0, 0, Kind.INSTANT, LockScope.NONE, Duration.ZERO);
+    public static final OperationCost UNKNOWN = new OperationCost(-1, -1, Kind.INSTANT, LockScope.NONE, null);
+
+    private final long rows;
+    private final long bytes;
+    private final Kind kind;
+    private final LockScope lockScope;
+    private final Duration duration;
+
+    public OperationCost(final long rows, final long bytes, final Kind kind, final LockScope lockScope, final Duration duration) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.kind = kind;
+        this.lockScope = lockScope;
+        this.duration = duration;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public LockScope getLockScope() {
+        return lockScope;
+    }
+
+    /**
+     * True when writes to the table wait for the operation to finish.
+     */
+    public boolean blocksWrites() {
+        return lockScope != LockScope.NONE;
+    }
+
+    /**
+     * The estimated time the operation takes, or null when the table size is unknown.
+     */
+    public Duration getEstimatedDuration() {
+        return duration;
+    }
+
+    /**
+     * Adds two costs up: an unknown count stays unknown, and the more expensive kind and the wider lock win.
+     */
+    public OperationCost plus(final OperationCost other) {
+        return new OperationCost(
+            rows < 0 || other.rows < 0 ? -1 : rows + other.rows,
+            bytes < 0 || other.bytes < 0 ? -1 : bytes + other.bytes,
+            kind.compareTo(other.kind) >= 0 ? kind : other.kind,
+            lockScope.compareTo(other.lockScope) >= 0 ? lockScope : other.lockScope,
+            duration == null || other.duration == null ? null : duration.plus(other.duration)
+        );
+    }
+
+    @Override
+    public String toString() {
+        return kind + ", " + (rows < 0 ? "? rows" : rows + " rows") + ", " + (bytes < 0 ? "? bytes" : bytes + " bytes")
+            + (duration == null ? ", ? ms" : ", ~" + duration.toMillis() + " ms")
+            + (blocksWrites() ? ", blocks " + (lockScope == LockScope.ALL ? "reads and writes" : "writes") : "");
+    }
+}
@@ -0,0 +1,79 @@
+package dev.snowz.ormlitemigrator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies a plan one {@link DependencyGraph} level at a time, the tables of a level concurrently, each on its own
+ * connection borrowed from the data source. A level starts once the previous one is applied, so no table is
+ * created before the tables it references.
+ */
+class ParallelExecutor {
+
+    private final Database.Type type;
+    private final DataSource dataSource;
+    private final int parallelism;
+    private final int batchSize;
+    private final boolean transactional;
+    private final MigrationListener listener;
+
+    ParallelExecutor(final Database.Type type, final DataSource dataSource, final int parallelism, final int batchSize, final boolean transactional, final MigrationListener listener) {
+        this.type = type;
+        this.dataSource = dataSource;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.transactional = transactional;
+        this.listener = listener;
+    }
+
+    MigrationResult apply(final List<List<TableMigration>> levels) throws SQLException {
+        final MigrationResult result = new MigrationResult();
+        final long start = System.nanoTime();
+        final int widest = levels.stream().mapToInt(List::size).max().orElse(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, widest));
+        try {
+            for (final List<TableMigration> level : levels) {
+                final List<Future<MigrationResult>> futures = new ArrayList<>();
+                for (final TableMigration table : level) {
+                    futures.add(executor.submit(() -> this.apply(table)));
+                }
+                // merged in plan order, so failures are reported in the order of a sequential run
+                for (final Future<MigrationResult> future : futures) {
+                    result.merge(future.get());
+                }
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("parallel apply failed", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while applying the plan", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    private MigrationResult apply(final TableMigration table) throws SQLException {
+        try (final Connection connection = this.dataSource.getConnection()) {
+            final MigrationExecutor executor = new MigrationExecutor(this.type, connection, this.batchSize, this.listener);
+            if (this.transactional) {
+                return executor.applyTransactionally(List.of(table));
+            }
+            return executor.apply(List.of(table));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Runs between the diff and the rendering of a table's operations. It merges the migrations of models that map to
+ * the same table, drops duplicate columns and redundant indexes, and orders the operations so indexes are built
+ * after the table and its columns exist.
+ */
+class PlanOptimizer {
+    private static final Logger logger = LoggerFactory.getLogger(PlanOptimizer.class.getSimpleName());
+
+    private final Database.Type type;
+
+    PlanOptimizer(final Database.Type type) {
+        this.type = type;
+    }
+
+    TableMigration optimize(final List<TableMigration> sameTable) {
+        final TableMigration migration = merge(sameTable);
+        removeDuplicateColumns(migration);
+        removeRedundantIndexes(migration);
+        migration.getOperations().sort(Comparator.comparingInt(PlanOptimizer::rank));
+        return migration;
+    }
+
+    /**
+     * Folds the migrations of several models of one table into the first. When the table is created, the columns
+     * the other models declare on top of the first become column additions on the new table.
+     */
+    private TableMigration merge(final List<TableMigration> sameTable) {
+        final TableMigration first = sameTable.get(0);
+        if (sameTable.size() == 1) {
+            return first;
+        }
+
+        final TableMigration merged = new TableMigration(first.getTableName());
+        merged.setExistingIndexes(first.getExistingIndexes());
+        merged.setStatistics(first.getStatistics());
+
+        CreateTable created = null;
+        for (final TableMigration migration : sameTable) {
+            merged.getStatements().addAll(migration.getStatements());
+
+            for (final MigrationOperation operation : migration.getOperations()) {
+                if (!(operation instanceof CreateTable)) {
+                    merged.getOperations().add(operation);
+                } else if (created == null) {
+                    created = (CreateTable) operation;
+                    merged.getOperations().add(operation);
+                } else {
+                    for (final ModelColumn column : ((CreateTable) operation).getModel().getColumns()) {
+                        if (!hasColumn(created.getModel(), column.getFieldName())) {
+                            merged.getOperations().add(new AddColumn(merged.getTableName(), column.getFieldName(), column.getDefinition(type), false));
+                        }
+                    }
+                }
+            }
+
+            for (final ColumnBackfill backfill : migration.getBackfills()) {
+                if (merged.getBackfills().stream().noneMatch(b -> b.getColumnName().equalsIgnoreCase(backfill.getColumnName()))) {
+                    merged.getBackfills().add(backfill);
+                }
+            }
+        }
+
+        logger.info("merged {} models of {} into one migration", sameTable.size(), merged.getTableName());
+        return merged;
+    }
+
+    private static boolean hasColumn(final CompiledModel model, final String columnName) {
+        return model.getColumns().stream().anyMatch(c -> c.getFieldName().equalsIgnoreCase(columnName));
+    }
+
+    private static void removeDuplicateColumns(final TableMigration migration) {
+        final Set<String> columns = new HashSet<>();
+        final Set<String> altered = new HashSet<>();
+        migration.getOperations().removeIf(operation ->
+            operation instanceof AddColumn && !columns.add(((AddColumn) operation).getColumnName().toUpperCase(Locale.ROOT))
+                || operation instanceof AlterColumn && !altered.add(((AlterColumn) operation).getColumnName().toUpperCase(Locale.ROOT)));
+
+        // a table is rebuilt once, the next run picks up what the other models of the table change on top
+        boolean rebuilt = false;
+        for (final Iterator<MigrationOperation> it = migration.getOperations().iterator(); it.hasNext(); ) {
+            if (it.next() instanceof RebuildTable) {
+                if (rebuilt) {
+                    it.remove();
+                }
+                rebuilt = true;
+            }
+        }
+    }
+
+    /**
+     * Removes index builds that would only duplicate another index: a second index with the same name, an index
+     * with the same columns as another one, or a non-unique index whose columns are a leading prefix of another
+     * index, which serves the same lookups.
+     */
+    private static void removeRedundantIndexes(final TableMigration migration) {
+        final Set<String> dropped = new HashSet<>();
+        final List<CreateIndex> creates = new ArrayList<>();
+        for (final MigrationOperation operation : migration.getOperations()) {
+            if (operation instanceof DropIndex) {
+                dropped.add(((DropIndex) operation).getIndexName().toUpperCase(Locale.ROOT));
+            } else if (operation instanceof CreateIndex) {
+                creates.add((CreateIndex) operation);
+            }
+        }
+        if (creates.isEmpty()) {
+            return;
+        }
+
+        final List<Indexes> existing = new ArrayList<>();
+        for (final Indexes index : migration.getExistingIndexes()) {
+            if (!dropped.contains(index.getName().toUpperCase(Locale.ROOT))) {
+                existing.add(index);
+            }
+        }
+
+        final Set<CreateIndex> redundant = new HashSet<>();
+        final Map<String, CreateIndex> byName = new HashMap<>();
+        for (final CreateIndex create : creates) {
+            final CreateIndex kept = byName.get(create.getIndex().getName().toUpperCase(Locale.ROOT));
+            if (kept == null || stronger(create.getIndex(), kept.getIndex())) {
+                byName.put(create.getIndex().getName().toUpperCase(Locale.ROOT), create);
+            }
+        }
+        for (final CreateIndex create : creates) {
+            if (byName.get(create.getIndex().getName().toUpperCase(Locale.ROOT)) != create) {
+                logger.info("skipping index {} on {}, declared twice", create.getIndex().getName(), migration.getTableName());
+                redundant.add(create);
+            }
+        }
+
+        for (int i = 0; i < creates.size(); i++) {
+            final Indexes index = creates.get(i).getIndex();
+            if (redundant.contains(creates.get(i))) {
+                continue;
+            }
+
+            Indexes coveredBy = null;
+            for (final Indexes other : existing) {
+                if (covers(other, index)) {
+                    coveredBy = other;
+                    break;
+                }
+            }
+            for (int j = 0; j < creates.size() && coveredBy == null; j++) {
+                final Indexes other = creates.get(j).getIndex();
+                // of two identical indexes the first one is kept
+                if (j != i && !redundant.contains(creates.get(j)) && covers(other, index) && (j < i || !covers(index, other))) {
+                    coveredBy = other;
+                }
+            }
+
+            if (coveredBy != null) {
+                logger.info("skipping index {} on {}, already covered by {}", index.getName(), migration.getTableName(), coveredBy.getName());
+                redundant.add(creates.get(i));
+            }
+        }
+
+        migration.getOperations().removeIf(redundant::contains);
+    }
+
+    /**
+     * Keeps one index per name. When a field is declared both {@code index} and {@code unique} the two indexes share
+     * a name, and the unique one wins.
+     */
+    static Collection<Indexes> distinctByName(final List<Indexes> indexes) {
+        final Map<String, Indexes> byName = new LinkedHashMap<>();
+        for (final Indexes index : indexes) {
+            final String key = index.getName().toUpperCase(Locale.ROOT);
+            final Indexes kept = byName.get(key);
+            if (kept == null || stronger(index, kept)) {
+                byName.put(key, index);
+            }
+        }
+        return byName.values();
+    }
+
+    private static boolean stronger(final Indexes index, final Indexes than) {
+        return Boolean.TRUE.equals(index.getUnique()) && !Boolean.TRUE.equals(than.getUnique());
+    }
+
+    /**
+     * True when {@code other} serves every lookup {@code index} does. A unique index is only covered by a unique
+     * index on exactly the same columns, since a longer one enforces a weaker constraint.
+     */
+    private static boolean covers(final Indexes other, final Indexes index) {
+        final List<String> columns = index.getColumns();
+        final List<String> otherColumns = other.getColumns();
+        if (otherColumns.size() < columns.size()) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columns.get(i).equalsIgnoreCase(otherColumns.get(i))) {
+                return false;
+            }
+        }
+        if (Boolean.TRUE.equals(index.getUnique())) {
+            return Boolean.TRUE.equals(other.getUnique()) && otherColumns.size() == columns.size();
+        }
+        return true;
+    }
+
+    private static int rank(final MigrationOperation operation) {
+        if (operation instanceof DropIndex) {
+            return 0;
+        }
+        if (operation instanceof CreateTable) {
+            return 1;
+        }
+        if (operation instanceof RebuildTable) {
+            return 1;
+        }
+        if (operation instanceof AddColumn || operation instanceof AlterColumn) {
+            return 2;
+        }
+        return 3;
+    }
+}
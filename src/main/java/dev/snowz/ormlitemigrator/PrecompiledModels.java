@@ -0,0 +1,12 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.List;
+
+/**
+ * Implemented by the registry class the annotation processor generates, and found through
+ * {@link java.util.ServiceLoader}.
+ */
+public interface PrecompiledModels {
+
+    List<CompiledModel> models();
+}
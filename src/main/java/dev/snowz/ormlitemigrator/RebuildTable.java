@@ -0,0 +1,340 @@
+package dev.snowz.ormlitemigrator;
+
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.*;
+
+/**
+ * Rebuilds a SQLite table, which cannot change the type or nullability of a column in place, the way SQLite
+ * documents for schema changes ALTER TABLE cannot make: a new table is created, filled from the old one with a
+ * single {@code INSERT ... SELECT}, swapped in under the old name, and given the old table's indexes and triggers
+ * back as they were written. The new table is the old table's definition as SQLite keeps it, so DEFAULT, CHECK,
+ * COLLATE and REFERENCES clauses and table constraints survive; only the changed columns take their type and
+ * nullability from the model, and the columns the model adds are created along the way. A table whose definition
+ * cannot be carried over, e.g. one with generated columns, is refused while planning. The statements have to run in
+ * one transaction, with foreign key enforcement switched off around it, see {@link MigrationExecutor}.
+ */
+public class RebuildTable extends MigrationOperation {
+
+    static final String SUFFIX = "_ormlite_rebuild";
+
+    // keywords that start a column constraint, and those that start a table constraint
+    private static final Set<String> COLUMN_CONSTRAINTS = Set.of("CONSTRAINT", "PRIMARY", "NOT", "NULL", "UNIQUE", "CHECK", "DEFAULT", "COLLATE", "REFERENCES", "GENERATED", "AS");
+    private static final Set<String> TABLE_CONSTRAINTS = Set.of("CONSTRAINT", "PRIMARY", "UNIQUE", "CHECK", "FOREIGN");
+
+    private final CompiledModel model;
+    private final List<DatabaseFieldType> liveColumns;
+    private final List<AlterColumn> changes;
+    private final List<String> triggers;
+    private final Map<String, String> liveIndexes = new HashMap<>();
+    // per upper-cased column name its definition as written, and its constraints other than its nullability
+    private final Map<String, String> liveDefinitions = new HashMap<>();
+    private final Map<String, String> liveConstraints = new HashMap<>();
+    private final List<String> tableConstraints = new ArrayList<>();
+    private final String tableOptions;
+    private boolean livePrimaryKey;
+
+    /**
+     * @param liveDefinition the CREATE TABLE statement of the table, from {@code sqlite_master}
+     * @param triggers       the CREATE TRIGGER statements of the table's triggers
+     * @param indexes        the CREATE INDEX statements of the table's indexes by index name
+     * @throws SQLFeatureNotSupportedException when the table's definition cannot be carried over to the new table
+     */
+    public RebuildTable(final CompiledModel model, final List<DatabaseFieldType> liveColumns, final List<AlterColumn> changes, final String liveDefinition, final List<String> triggers,
+                        final Map<String, String> indexes) throws SQLFeatureNotSupportedException {
+        super(model.getTableName());
+        this.model = model;
+        this.liveColumns = liveColumns;
+        this.changes = changes;
+        this.triggers = triggers;
+        indexes.forEach((indexName, sql) -> this.liveIndexes.put(indexName.toUpperCase(Locale.ROOT), sql));
+
+        if (liveDefinition == null) {
+            throw refused("its CREATE TABLE statement is unknown");
+        }
+        final List<Token> statement = tokens(liveDefinition, 0, liveDefinition.length());
+        int body = 0;
+        while (body < statement.size() && !statement.get(body).text.startsWith("(")) {
+            final String word = statement.get(body).upper();
+            if (word.equals("VIRTUAL") || word.equals("AS")) {
+                throw refused("it is not an ordinary table");
+            }
+            body++;
+        }
+        if (body == statement.size()) {
+            throw refused("its CREATE TABLE statement has no column list");
+        }
+        this.tableOptions = body + 1 < statement.size() ? liveDefinition.substring(statement.get(body + 1).start).trim() : "";
+
+        final Token columns = statement.get(body);
+        for (final List<Token> element : split(tokens(liveDefinition, columns.start + 1, columns.end - 1))) {
+            if (element.isEmpty()) {
+                continue;
+            }
+            final String text = text(liveDefinition, element);
+            if (TABLE_CONSTRAINTS.contains(element.get(0).upper())) {
+                this.tableConstraints.add(text);
+                this.livePrimaryKey |= element.stream().anyMatch(t -> t.upper().equals("PRIMARY"));
+                continue;
+            }
+
+            final String columnName = unquote(element.get(0).text);
+            final List<String> kept = new ArrayList<>();
+            for (final List<Token> constraint : constraints(element.subList(1, element.size()))) {
+                final String keyword = keyword(constraint);
+                if (keyword.equals("GENERATED") || keyword.equals("AS")) {
+                    throw refused(columnName + " is a generated column");
+                }
+                this.livePrimaryKey |= keyword.equals("PRIMARY");
+                if (!keyword.equals("NOT") && !keyword.equals("NULL")) {
+                    kept.add(text(liveDefinition, constraint));
+                }
+            }
+            this.liveDefinitions.put(columnName.toUpperCase(Locale.ROOT), text);
+            this.liveConstraints.put(columnName.toUpperCase(Locale.ROOT), String.join(" ", kept));
+        }
+    }
+
+    public CompiledModel getModel() {
+        return model;
+    }
+
+    /**
+     * The column changes that made the rebuild necessary.
+     */
+    public List<AlterColumn> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @param indexes the indexes of the old table to create again on the new one
+     */
+    List<MigrationStatement> statements(final Database.Type type, final Collection<Indexes> indexes) {
+        final String tableName = getTableName();
+        final String rebuilt = tableName + SUFFIX;
+        final ColumnDiff live = new ColumnDiff(liveColumns);
+        final Set<String> changed = new HashSet<>();
+        final Set<String> tightened = new HashSet<>();
+        for (final AlterColumn change : changes) {
+            changed.add(change.getColumnName().toUpperCase(Locale.ROOT));
+            if (change.isTightened()) {
+                tightened.add(change.getColumnName().toUpperCase(Locale.ROOT));
+            }
+        }
+
+        final List<String> definitions = new ArrayList<>();
+        final List<String> primaryKey = new ArrayList<>();
+        final List<String> targets = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        final Set<String> modelColumns = new HashSet<>();
+
+        for (final ModelColumn column : model.getColumns()) {
+            final String key = column.getFieldName().toUpperCase(Locale.ROOT);
+            modelColumns.add(key);
+            if (column.isId() || column.isGeneratedId()) {
+                primaryKey.add(column.getFieldName());
+            }
+
+            final DatabaseFieldType found = live.get(column.getFieldName());
+            if (found == null || !this.liveDefinitions.containsKey(key)) {
+                definitions.add(column.getDefinition(type));
+            } else if (changed.contains(key)) {
+                // the model decides type and nullability, the column keeps its other constraints
+                final String constraints = this.liveConstraints.get(key);
+                definitions.add(column.getDefinition(type) + (constraints.isEmpty() ? "" : " " + constraints));
+            } else {
+                definitions.add(this.liveDefinitions.get(key));
+            }
+
+            final String fillValue = column.getBackfillValue(type);
+            if (found != null && fillValue != null && tightened.contains(key)) {
+                targets.add(column.getFieldName());
+                values.add("COALESCE(" + found.getFieldName() + ", " + fillValue + ")");
+            } else if (found != null) {
+                targets.add(column.getFieldName());
+                values.add(found.getFieldName());
+            } else if (fillValue != null) {
+                targets.add(column.getFieldName());
+                values.add(fillValue);
+            }
+        }
+
+        for (final DatabaseFieldType found : liveColumns) {
+            final String key = found.getFieldName().toUpperCase(Locale.ROOT);
+            if (!modelColumns.contains(key)) {
+                definitions.add(this.liveDefinitions.getOrDefault(key, found.getFieldName() + " " + found.getType() + (Boolean.FALSE.equals(found.getNullable()) ? " NOT NULL" : "")));
+                targets.add(found.getFieldName());
+                values.add(found.getFieldName());
+            }
+        }
+
+        if (!this.livePrimaryKey && !primaryKey.isEmpty()) {
+            definitions.add("PRIMARY KEY(" + String.join(",", primaryKey) + ")");
+        }
+        definitions.addAll(this.tableConstraints);
+
+        final List<MigrationStatement> statements = new ArrayList<>();
+        statements.add(new MigrationStatement("DROP TABLE IF EXISTS " + rebuilt));
+        statements.add(new MigrationStatement("CREATE TABLE " + rebuilt + " (" + String.join(",", definitions) + ")" + (this.tableOptions.isEmpty() ? "" : " " + this.tableOptions)));
+        statements.add(new MigrationStatement("INSERT INTO " + rebuilt + " (" + String.join(",", targets) + ") SELECT " + String.join(",", values) + " FROM " + tableName));
+        statements.add(new MigrationStatement("DROP TABLE " + tableName));
+        statements.add(new MigrationStatement("ALTER TABLE " + rebuilt + " RENAME TO " + tableName));
+        for (final Indexes index : indexes) {
+            // as written, expression and partial indexes are not described by their columns
+            final String sql = this.liveIndexes.get(index.getName().toUpperCase(Locale.ROOT));
+            statements.add(new MigrationStatement(sql != null ? sql : Table.createIndexStatement(index, tableName)));
+        }
+        for (final String trigger : triggers) {
+            statements.add(new MigrationStatement(trigger));
+        }
+        return statements;
+    }
+
+    private SQLFeatureNotSupportedException refused(final String reason) {
+        return new SQLFeatureNotSupportedException("cannot rebuild " + getTableName() + " to change its columns, " + reason);
+    }
+
+    /**
+     * Splits the constraints of a column definition, the tokens after its name, into one list per constraint.
+     * The type tokens before the first constraint are skipped.
+     */
+    private static List<List<Token>> constraints(final List<Token> tokens) {
+        final List<List<Token>> constraints = new ArrayList<>();
+        List<Token> current = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            final String word = tokens.get(i).upper();
+            final String previous = i > 0 ? tokens.get(i - 1).upper() : "";
+            final String next = i + 1 < tokens.size() ? tokens.get(i + 1).upper() : "";
+            // DEFAULT NULL, ON DELETE SET NULL/DEFAULT, NOT DEFERRABLE and a named CONSTRAINT continue a constraint
+            final boolean starts = COLUMN_CONSTRAINTS.contains(word)
+                && !previous.equals("DEFAULT") && !previous.equals("SET") && !previous.equals("NOT")
+                && !(word.equals("NOT") && next.equals("DEFERRABLE"))
+                && !(current != null && current.size() == 2 && current.get(0).upper().equals("CONSTRAINT"));
+            if (starts) {
+                current = new ArrayList<>();
+                constraints.add(current);
+            }
+            if (current != null) {
+                current.add(tokens.get(i));
+            }
+        }
+        return constraints;
+    }
+
+    private static String keyword(final List<Token> constraint) {
+        return constraint.get(0).upper().equals("CONSTRAINT") && constraint.size() > 2 ? constraint.get(2).upper() : constraint.get(0).upper();
+    }
+
+    private static List<List<Token>> split(final List<Token> tokens) {
+        final List<List<Token>> elements = new ArrayList<>();
+        List<Token> current = new ArrayList<>();
+        for (final Token token : tokens) {
+            if (token.text.equals(",")) {
+                elements.add(current);
+                current = new ArrayList<>();
+            } else {
+                current.add(token);
+            }
+        }
+        elements.add(current);
+        return elements;
+    }
+
+    private static String text(final String sql, final List<Token> tokens) {
+        return sql.substring(tokens.get(0).start, tokens.get(tokens.size() - 1).end);
+    }
+
+    private static String unquote(final String name) {
+        if (name.length() > 1 && "\"'`[".indexOf(name.charAt(0)) >= 0) {
+            return name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    /**
+     * Splits SQL into words, quoted names and strings, parenthesized groups and commas, skipping comments.
+     */
+    private static List<Token> tokens(final String sql, final int from, final int to) {
+        final List<Token> tokens = new ArrayList<>();
+        int i = from;
+        while (i < to) {
+            final char c = sql.charAt(i);
+            final int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else if (sql.startsWith("--", i)) {
+                final int end = sql.indexOf('\n', i);
+                i = end < 0 || end > to ? to : end + 1;
+                continue;
+            } else if (sql.startsWith("/*", i)) {
+                final int end = sql.indexOf("*/", i + 2);
+                i = end < 0 || end > to ? to : end + 2;
+                continue;
+            } else if (c == ',') {
+                i++;
+            } else if (c == '(') {
+                i = closing(sql, i, to) + 1;
+            } else if ("\"'`[".indexOf(c) >= 0) {
+                i = quoteEnd(sql, i, to) + 1;
+            } else {
+                while (i < to && !Character.isWhitespace(sql.charAt(i)) && ",()\"'`[".indexOf(sql.charAt(i)) < 0) {
+                    i++;
+                }
+            }
+            tokens.add(new Token(sql.substring(start, i), start, i));
+        }
+        return tokens;
+    }
+
+    private static int closing(final String sql, final int open, final int to) {
+        int depth = 0;
+        for (int i = open; i < to; i++) {
+            final char c = sql.charAt(i);
+            if ("\"'`[".indexOf(c) >= 0) {
+                i = quoteEnd(sql, i, to);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return to - 1;
+    }
+
+    private static int quoteEnd(final String sql, final int open, final int to) {
+        final char close = sql.charAt(open) == '[' ? ']' : sql.charAt(open);
+        for (int i = open + 1; i < to; i++) {
+            if (sql.charAt(i) != close) {
+                continue;
+            }
+            // a doubled quote is an escaped one
+            if (close != ']' && i + 1 < to && sql.charAt(i + 1) == close) {
+                i++;
+            } else {
+                return i;
+            }
+        }
+        return to - 1;
+    }
+
+    private static class Token {
+        private final String text;
+        private final int start;
+        private final int end;
+
+        private Token(final String text, final int start, final int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        private String upper() {
+            return text.toUpperCase(Locale.ROOT);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RebuildTable{" + getTableName() + ", changes=" + changes + "}";
+    }
+}
@@ -0,0 +1,61 @@
+package dev.snowz.ormlitemigrator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Stable hash of a set of compiled models as they would be rendered for one database type. Two runs with
+ * the same models, migrator version and database type always produce the same fingerprint, whatever order
+ * the models were queued in.
+ */
+final class SchemaFingerprint {
+
+    static final String MIGRATOR_VERSION = "1.0.0";
+
+    private SchemaFingerprint() {
+    }
+
+    static String of(final Database.Type type, final List<CompiledModel> models) {
+        final List<CompiledModel> sorted = new ArrayList<>(models);
+        sorted.sort(Comparator.comparing(CompiledModel::getTableName, String.CASE_INSENSITIVE_ORDER));
+
+        final MessageDigest digest = sha256();
+        update(digest, MIGRATOR_VERSION);
+        update(digest, type.name());
+
+        for (final CompiledModel model : sorted) {
+            update(digest, model.getTableName());
+            for (final ModelColumn column : model.getColumns()) {
+                update(digest, column.getDefinition(type));
+            }
+            update(digest, model.getCreateStatement(type));
+            for (final String index : model.getIndexStatements()) {
+                update(digest, index);
+            }
+        }
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // separator so that ("ab", "c") and ("a", "bc") hash differently
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,25 +1,65 @@
 package dev.snowz.ormlitemigrator;
 
-import com.j256.ormlite.field.DatabaseField;
-import com.j256.ormlite.table.DatabaseTable;
+import dev.snowz.ormlitemigrator.exception.MigrationException;
 import dev.snowz.ormlitemigrator.exception.NoFieldDefinedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Field;
-import java.sql.ResultSet;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-
-import static dev.snowz.ormlitemigrator.DatabaseConnectionManager.determineFieldsToBeCreated;
+import java.util.stream.Stream;
 
 public class SchemaInterpreter {
     private static final Logger logger = LoggerFactory.getLogger(SchemaInterpreter.class.getSimpleName());
 
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final String DEFAULT_FINGERPRINT_SCOPE = "default";
+    public static final int DEFAULT_BACKFILL_CHUNK_SIZE = 1000;
+    public static final Duration DEFAULT_LOCK_LEASE = Duration.ofSeconds(60);
+
+    private static final Executor DEFAULT_ASYNC_EXECUTOR = asyncExecutor();
+
     private final Database database;
     private final List<Class> models;
+    private final List<CompiledModel> compiled = new ArrayList<>();
+    private boolean bulkIntrospection;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean transactional;
+    private DataSource dataSource;
+    private int parallelism;
+    private String fingerprintScope;
+    private boolean forceVerify;
+    private boolean onlineDdl;
+    private int backfillChunkSize;
+    private Duration backfillPause = Duration.ZERO;
+    private boolean estimateCosts;
+    private long scanBytesPerSecond = CostEstimator.DEFAULT_BYTES_PER_SECOND;
+    private long scanRowsPerSecond = CostEstimator.DEFAULT_ROWS_PER_SECOND;
+    private MigrationListener listener = MigrationListener.NOOP;
+    private Duration lockWait;
+    private boolean parallelApply;
+    private Duration lockLease = DEFAULT_LOCK_LEASE;
+    private SchemaSnapshot offlineSnapshot;
+    private String lockTenant;
+    private DataSource lockTenantSource;
 
     public SchemaInterpreter(final Database database) {
         this.database = database;
@@ -31,242 +71,936 @@ public class SchemaInterpreter {
         this.models = models;
     }
 
-    private List<DatabaseFieldType> getSchema(final String tableName) throws SQLException {
-        final List<DatabaseFieldType> fields = new ArrayList<>();
-        final String query;
-        if (database.getType() == Database.Type.SqlLite) {
-            query = "PRAGMA table_info(" + tableName + ")";
-        } else if (database.getType() == Database.Type.H2) {
-            query = "SELECT column_name, data_type FROM information_schema.columns WHERE UPPER(table_name) = '" + tableName.toUpperCase() + "'";
-        } else if (database.getType() == Database.Type.Postgres) {
-            // For Postgres, we usually want lowercase, but if using H2 to simulate, we might need upper.
-            // To be safe, let's search case-insensitively.
-            query = "SELECT column_name, data_type FROM information_schema.columns WHERE UPPER(table_name) = '" + tableName.toUpperCase() + "'";
-        } else {
-            query = "SHOW COLUMNS FROM " + tableName;
-        }
-
-        logger.info(query);
-
-        try (final Statement stmt = database.getConnection().createStatement()) {
-            final ResultSet rs = stmt.executeQuery(query);
-            while (rs.next()) {
-                if (database.getType() == Database.Type.SqlLite) {
-                    fields.add(new DatabaseFieldType(rs.getString("name"), rs.getString("type")));
-                } else if (database.getType() == Database.Type.Postgres || database.getType() == Database.Type.H2) {
-                    fields.add(new DatabaseFieldType(rs.getString("column_name"), rs.getString("data_type")));
-                } else {
-                    // SHOW COLUMNS returns Field, Type, Null, Key, Default, Extra
-                    // Use indices to be safe across drivers/modes
-                    fields.add(new DatabaseFieldType(rs.getString(1), rs.getString(2)));
-                }
-            }
+    public <T> SchemaInterpreter model(final Class<T> databaseClass) {
+        this.models.add(databaseClass);
+        return this;
+    }
+
+    /**
+     * Queues an already compiled model, e.g. one built with {@link CompiledModel#of} without a model class of its
+     * own. Compiled models are planned after the queued model classes.
+     */
+    public SchemaInterpreter model(final CompiledModel model) {
+        this.compiled.add(model);
+        return this;
+    }
+
+    /**
+     * Queues every model the annotation processor generated a registry for, without scanning the classpath
+     * or reflecting on the model classes.
+     */
+    public SchemaInterpreter precompiledModels() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader classLoader = contextClassLoader != null ? contextClassLoader : SchemaInterpreter.class.getClassLoader();
+        for (final CompiledModel model : ModelRegistry.loadPrecompiled(classLoader)) {
+            this.models.add(model.getModelClass());
         }
+        return this;
+    }
 
-        return fields;
+    /**
+     * Reads the columns and indexes of every queued model with a few set-based queries before diffing,
+     * instead of querying the database once per table.
+     */
+    public SchemaInterpreter bulkIntrospection(final boolean bulkIntrospection) {
+        this.bulkIntrospection = bulkIntrospection;
+        return this;
     }
 
-    private List<Indexes> getIndexes(final String tableName) throws SQLException {
-        if (database.getType() == Database.Type.SqlLite) {
-            return getSQLiteIndexes(tableName);
+    /**
+     * Number of statements sent per JDBC batch by {@link #migrate()}. A size of 1 runs every statement on its own.
+     */
+    public SchemaInterpreter batchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1");
         }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Applies the whole plan in one transaction with a savepoint per table, so a table whose statements
+     * fail is rolled back on its own. Only SQLite and Postgres roll back DDL; H2, MySQL and MariaDB commit
+     * every DDL statement implicitly, so there the plan is applied table by table without a transaction.
+     */
+    public SchemaInterpreter transactional(final boolean transactional) {
+        this.transactional = transactional;
+        return this;
+    }
 
-        if (database.getType() == Database.Type.Postgres || database.getType() == Database.Type.H2) {
-            // Postgres and H2 index retrieval is more complex via standard SQL or requires specific queries
-            // For now, returning empty list to avoid breaking migration if indexes are not critical for the user's immediate request
-            // or implementing a basic check.
-            // Implementing basic check for Postgres/H2:
-            return getPostgresIndexes(tableName);
+    /**
+     * Introspects and diffs the queued models concurrently, each table on its own connection borrowed from
+     * the given data source, using at most {@code parallelism} threads. The plan keeps the queue order.
+     */
+    public SchemaInterpreter parallel(final DataSource dataSource, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
         }
+        this.dataSource = dataSource;
+        this.parallelism = parallelism;
+        return this;
+    }
 
-        final Map<String, Indexes> indexes = new HashMap<>();
-        final String query = "show indexes from " + tableName;
+    /**
+     * Like {@link #parallel(DataSource, int)}, borrowing from the data source the database was built on.
+     */
+    public SchemaInterpreter parallel(final int parallelism) {
+        if (database.getDataSource() == null) {
+            throw new IllegalStateException("parallel diffing needs a DataSource-backed database or an explicit DataSource");
+        }
+        return this.parallel(database.getDataSource(), parallelism);
+    }
 
-        logger.info(query);
+    /**
+     * Applies tables that do not reference each other through foreign fields concurrently, each on its own
+     * connection from the data source given to {@link #parallel(DataSource, int)}, with the same parallelism.
+     * Tables are applied in levels: a table only starts once every table it references is applied.
+     */
+    public SchemaInterpreter parallelApply(final boolean parallelApply) {
+        this.parallelApply = parallelApply;
+        return this;
+    }
 
-        try (final Statement stmt = database.getConnection().createStatement()) {
-            final ResultSet rs = stmt.executeQuery(query);
-            while (rs.next()) {
+    /**
+     * Stores a hash of the queued models after every successful migration and skips introspection and
+     * diffing entirely while it still matches. Uses the {@value #DEFAULT_FINGERPRINT_SCOPE} scope.
+     */
+    public SchemaInterpreter fingerprint(final boolean fingerprint) {
+        this.fingerprintScope = fingerprint ? DEFAULT_FINGERPRINT_SCOPE : null;
+        return this;
+    }
 
-                //TODO this is specific to mysql
-                final Indexes index = indexes.
-                    getOrDefault(
-                        rs.getString("Key_name"),
-                        new Indexes(rs.getString("Key_name")));
+    /**
+     * Same as {@link #fingerprint(boolean)}, keeping the hash under its own scope so several interpreters with
+     * different model sets can share a database.
+     */
+    public SchemaInterpreter fingerprint(final String scope) {
+        this.fingerprintScope = scope;
+        return this;
+    }
 
-                index.getColumns().add(rs.getString("Column_name"));
-                index.setUnique(!rs.getString("Non_unique").equals("1"));
+    /**
+     * Runs the full diff even when the stored fingerprint matches.
+     */
+    public SchemaInterpreter forceVerify(final boolean forceVerify) {
+        this.forceVerify = forceVerify;
+        return this;
+    }
 
-                indexes.put(rs.getString("Key_name"), index);
-            }
+    /**
+     * Renders changes to existing tables so they do not block writes: MySQL/MariaDB statements request
+     * {@code ALGORITHM=INSTANT} or {@code ALGORITHM=INPLACE, LOCK=NONE} and fall back to a plain ALTER when the
+     * server refuses, Postgres builds indexes with {@code CREATE INDEX CONCURRENTLY} outside any transaction.
+     */
+    public SchemaInterpreter onlineDdl(final boolean onlineDdl) {
+        this.onlineDdl = onlineDdl;
+        return this;
+    }
+
+    /**
+     * Adds new NOT NULL columns to existing tables in three steps instead of one blocking ALTER: the column is
+     * added as nullable, existing rows are filled with its {@code defaultValue} (or the zero value of its type)
+     * in chunks of {@value #DEFAULT_BACKFILL_CHUNK_SIZE} rows, then the column is tightened to NOT NULL.
+     * SQLite adds the column with a constant DEFAULT instead, which does not rewrite the table.
+     */
+    public SchemaInterpreter backfill(final boolean backfill) {
+        return backfill ? this.backfill(DEFAULT_BACKFILL_CHUNK_SIZE, Duration.ZERO) : this.backfill(0, Duration.ZERO);
+    }
+
+    /**
+     * Same as {@link #backfill(boolean)} with the given number of rows per chunk, pausing between chunks to
+     * limit the write load. Progress is checkpointed after every chunk, an interrupted backfill resumes on the
+     * next {@link #migrate()}.
+     */
+    public SchemaInterpreter backfill(final int chunkSize, final Duration pauseBetweenChunks) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunk size must not be negative");
         }
+        this.backfillChunkSize = chunkSize;
+        this.backfillPause = pauseBetweenChunks;
+        return this;
+    }
 
-        return new ArrayList<>(indexes.values());
+    /**
+     * Reads the approximate size of every changed table from the catalog and estimates the rows, bytes and write
+     * blocking of each operation, see {@link TableMigration#getCost()}. Costs the extra catalog query per changed table.
+     */
+    public SchemaInterpreter estimateCosts(final boolean estimateCosts) {
+        this.estimateCosts = estimateCosts;
+        return this;
     }
 
-    private List<Indexes> getPostgresIndexes(final String tableName) throws SQLException {
-        // Basic implementation for Postgres/H2
-        // This query works for Postgres. H2 might differ slightly but often compatible with information_schema
-        // However, getting columns for indexes is tricky in standard SQL.
-        // For now, let's return empty to prevent crash, as index migration is an advanced feature.
-        // If user needs it, we can implement it fully.
-        return new ArrayList<>();
+    /**
+     * Like {@link #estimateCosts(boolean)}, deriving durations from the rate the database reads a table at, in bytes
+     * per second where the catalog reports table sizes and in rows per second elsewhere. Measure it on the target
+     * hardware; the defaults are 50 MiB and 100,000 rows per second.
+     */
+    public SchemaInterpreter estimateCosts(final long bytesPerSecond, final long rowsPerSecond) {
+        if (bytesPerSecond <= 0 || rowsPerSecond <= 0) {
+            throw new IllegalArgumentException("scan rates must be positive");
+        }
+        this.estimateCosts = true;
+        this.scanBytesPerSecond = bytesPerSecond;
+        this.scanRowsPerSecond = rowsPerSecond;
+        return this;
     }
 
-    private List<Indexes> getSQLiteIndexes(final String tableName) throws SQLException {
-        final List<Indexes> indexes = new ArrayList<>();
-        final String query = "PRAGMA index_list(" + tableName + ")";
-        logger.info(query);
-
-        try (final Statement stmt = database.getConnection().createStatement()) {
-            final ResultSet rs = stmt.executeQuery(query);
-            while (rs.next()) {
-                final String indexName = rs.getString("name");
-                final boolean unique = rs.getBoolean("unique");
-                final Indexes index = new Indexes(indexName);
-                index.setUnique(unique);
-
-                try (final Statement stmt2 = database.getConnection().createStatement()) {
-                    final ResultSet rs2 = stmt2.executeQuery("PRAGMA index_info(" + indexName + ")");
-                    while (rs2.next()) {
-                        index.getColumns().add(rs2.getString("name"));
-                    }
-                }
-                indexes.add(index);
-            }
+    /**
+     * Reports phase and table timings, statement counts, backfilled rows and failures to the listener, e.g.
+     * {@link JfrMigrationListener}. Defaults to {@link MigrationListener#NOOP}.
+     */
+    public SchemaInterpreter listener(final MigrationListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Lets one node migrate at a time. A node that finds the lock taken retries with backoff for up to {@code wait},
+     * then skips the migration, see {@link MigrationResult#isSkipped()}. Together with {@link #fingerprint(boolean)}
+     * the nodes that waited take the fast path once the first one is done.
+     */
+    public SchemaInterpreter lock(final Duration wait) {
+        return this.lock(wait, DEFAULT_LOCK_LEASE);
+    }
+
+    /**
+     * Like {@link #lock(Duration)}. Where the lock is a table row, it expires {@code lease} after the holder's last
+     * heartbeat, so a crashed node's lock is taken over.
+     */
+    public SchemaInterpreter lock(final Duration wait, final Duration lease) {
+        if (wait.isNegative() || lease.isNegative() || lease.isZero()) {
+            throw new IllegalArgumentException("lock wait must not be negative and the lease must be positive");
         }
-        return indexes;
+        this.lockWait = wait;
+        this.lockLease = lease;
+        return this;
     }
 
-    public <T> SchemaInterpreter model(final Class<T> databaseClass) {
-        this.models.add(databaseClass);
+    /**
+     * Scopes the migration lock to one tenant of a {@link TenantMigrator}: tenants may share a server, and with it
+     * the namespace of advisory locks, while each of them is its own migration. A table lock is renewed on
+     * connections from {@code dataSource} when the tenant's database is one of its connections, switched to a schema.
+     */
+    SchemaInterpreter lockTenant(final String tenant, final DataSource dataSource) {
+        this.lockTenant = tenant;
+        this.lockTenantSource = dataSource;
         return this;
     }
 
+    boolean isParallel() {
+        return this.dataSource != null;
+    }
+
+    /**
+     * Diffs against the snapshot instead of introspecting the database, e.g. one exported from production with
+     * {@link #introspect()} and read back with {@link SchemaSnapshot#read(Path)}. Planning then needs no
+     * connection, so the database can be {@link Database#offline}. Fingerprints and backfill checkpoints live in
+     * the database and are not consulted, and {@link #migrate()} refuses to apply a plan diffed this way.
+     */
+    public SchemaInterpreter snapshot(final SchemaSnapshot snapshot) {
+        if (snapshot != null && snapshot.getType() != null && snapshot.getType() != database.getType()) {
+            throw new IllegalArgumentException("snapshot of a " + snapshot.getType() + " database cannot be diffed as " + database.getType());
+        }
+        this.offlineSnapshot = snapshot;
+        return this;
+    }
+
+    /**
+     * Reads the columns, indexes and statistics of the queued models' tables from the database, e.g. to
+     * {@link SchemaSnapshot#write(Path) write} them to a file for offline diffing.
+     */
+    public SchemaSnapshot introspect() throws SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        final List<String> tableNames = this.compiledModels().stream().map(CompiledModel::getTableName).collect(Collectors.toList());
+        try (final ConnectionLease lease = database.lease();
+             final SchemaIntrospector introspector = new SchemaIntrospector(database.getType(), lease.getConnection())) {
+            final SchemaSnapshot snapshot = introspector.snapshot(tableNames);
+            snapshot.setType(database.getType());
+            for (final String tableName : tableNames) {
+                if (!snapshot.getColumns(tableName).isEmpty()) {
+                    snapshot.setStatistics(tableName, introspector.statistics(tableName));
+                }
+            }
+            return snapshot;
+        }
+    }
+
     public String generate() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
-        final StringBuilder script = new StringBuilder();
+        final StringWriter script = new StringWriter();
+        try {
+            this.generate(script);
+        } catch (final IOException e) {
+            // a StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return script.toString();
+    }
+
+    /**
+     * Writes the migration script table by table as it is planned, so large plans are never held in memory as
+     * one string.
+     */
+    public void generate(final Writer out) throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound, IOException {
+        try (final Stream<TableMigration> tableMigrations = this.tableMigrations()) {
+            final Iterator<TableMigration> iterator = tableMigrations.iterator();
+            while (iterator.hasNext()) {
+                this.write(out, iterator.next());
+            }
+        } catch (final MigrationException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    public void generate(final Path path) throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound, IOException {
+        try (final Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            this.generate(out);
+        }
+    }
+
+    /**
+     * The statements of the migration in execution order, planned lazily one table at a time unless
+     * {@link #parallel(DataSource, int)} is set. Statements tightening a backfilled column follow the statements
+     * of their table. Database errors while the stream is consumed are thrown as {@link MigrationException}.
+     * Close the stream to return a connection borrowed from a data source.
+     */
+    public Stream<MigrationStatement> statements() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        return this.tableMigrations().flatMap(t -> Stream.concat(
+            t.getStatements().stream(),
+            t.getBackfills().stream().map(ColumnBackfill::getTighten)
+        ));
+    }
+
+    private void write(final Writer out, final TableMigration tableMigration) throws IOException {
+        if (this.estimateCosts) {
+            out.write("-- " + tableMigration.getTableName() + ": " + tableMigration.getCost() + "\n");
+        }
+        for (final MigrationStatement statement : tableMigration.getStatements()) {
+            if (statement.getStrategy() != null) {
+                out.write("-- online DDL: " + statement.getStrategy() + "\n");
+            }
+            out.write(statement.getSql() + ";\n");
+        }
+        for (final ColumnBackfill backfill : tableMigration.getBackfills()) {
+            out.write("-- backfill in chunks of " + this.backfillChunkSize + ": " + backfill.update() + "\n");
+            if (backfill.getTighten().getStrategy() != null) {
+                out.write("-- online DDL: " + backfill.getTighten().getStrategy() + "\n");
+            }
+            out.write(backfill.getTighten().getSql() + ";\n");
+        }
+    }
+
+    /**
+     * Like {@link #generate()}, on a virtual thread where the runtime has them and a daemon thread otherwise.
+     */
+    public CompletableFuture<String> generateAsync() {
+        return this.generateAsync(DEFAULT_ASYNC_EXECUTOR);
+    }
+
+    public CompletableFuture<String> generateAsync(final Executor executor) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(this.generate());
+            } catch (final Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Plans the migration with cost estimation enabled and without applying it, for deploy gates that refuse plans
+     * which would lock a table for too long.
+     */
+    public DryRunReport dryRun() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        final boolean estimateCosts = this.estimateCosts;
+        this.estimateCosts = true;
+        try {
+            return new DryRunReport(database.getType(), this.plan());
+        } finally {
+            this.estimateCosts = estimateCosts;
+        }
+    }
+
+    /**
+     * The migration plan: per changed table the optimized operations, their estimated costs and the statements
+     * they render to.
+     */
+    public List<TableMigration> plan() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        try (final Stream<TableMigration> tableMigrations = this.tableMigrations()) {
+            return tableMigrations.collect(Collectors.toList());
+        } catch (final MigrationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Plans on one connection, which is returned to the database's data source when the stream is closed.
+     */
+    private Stream<TableMigration> tableMigrations() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        final List<CompiledModel> tables = this.compiledModels();
+        if (this.offlineSnapshot != null) {
+            return this.planLazily(null, null, tables, this.listener);
+        }
+        final ConnectionLease lease = database.lease();
+
+        try {
+            if (this.fingerprintScope != null && this.fingerprintMatches(lease.getConnection(), SchemaFingerprint.of(database.getType(), tables))) {
+                logger.info("Schema fingerprint unchanged, skipping introspection");
+                lease.close();
+                return Stream.empty();
+            }
+
+            return this.planLazily(lease.getConnection(), tables, this.listener).onClose(lease::close);
+        } catch (final SQLException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
 
+    private List<CompiledModel> compiledModels() throws NoFieldDefinedException, TableAnnotationNotFound {
+        final List<CompiledModel> tables = new ArrayList<>();
         for (final Class model : this.models) {
+            tables.add(ModelRegistry.get(model));
+        }
+        tables.addAll(this.compiled);
+        return tables;
+    }
 
-            final Table table = this.fetchTable(model);
+    private boolean fingerprintMatches(final Connection connection, final String fingerprint) {
+        return !this.forceVerify && fingerprint.equals(new FingerprintStore(connection).read(this.fingerprintScope));
+    }
 
-            final List<DatabaseFieldType> schemaFoundInDatabase = getDatabaseFieldTypes(table);
-            final List<Indexes> indexesFound = getIndexes(table);
+    private List<TableMigration> diff(final Connection connection, final List<CompiledModel> tables, final MigrationListener listener) throws SQLException {
+        try (final Stream<TableMigration> tableMigrations = this.planLazily(connection, tables, listener)) {
+            return tableMigrations.collect(Collectors.toList());
+        } catch (final MigrationException e) {
+            throw e.getCause();
+        }
+    }
 
-            if (schemaFoundInDatabase.isEmpty()) {
-                if (!indexesFound.isEmpty()) {
-                    for (final Indexes i : indexesFound) {
-                        this.execute("drop indexes " + i.getName());
+    /**
+     * Plans each table only when the stream reaches it. In parallel mode the tables are planned up front.
+     * Models sharing a table are planned together and merged by the {@link PlanOptimizer}. Tables are planned
+     * in {@link DependencyGraph} order, after the tables their foreign fields reference. One introspector serves
+     * the whole stream, so its prepared statements are reused for every table; closing the stream closes it.
+     */
+    private Stream<TableMigration> planLazily(final Connection connection, final List<CompiledModel> queued, final MigrationListener listener) throws SQLException {
+        final SchemaIntrospector introspector = new SchemaIntrospector(database.getType(), connection);
+        try {
+            return this.planLazily(connection, introspector, queued, listener).onClose(introspector::close);
+        } catch (final SQLException | RuntimeException e) {
+            introspector.close();
+            throw e;
+        }
+    }
+
+    private Stream<TableMigration> planLazily(final Connection connection, final SchemaIntrospector introspector, final List<CompiledModel> queued, final MigrationListener listener) throws SQLException {
+        final List<CompiledModel> tables = new DependencyGraph(queued).order(queued);
+        final SchemaSnapshot snapshot;
+        if (this.offlineSnapshot != null) {
+            snapshot = this.offlineSnapshot;
+        } else if (this.bulkIntrospection) {
+            final long start = System.nanoTime();
+            snapshot = this.getSnapshot(introspector, tables);
+            phaseFinished(listener, MigrationPhase.INTROSPECTION, start);
+        } else {
+            snapshot = null;
+        }
+        final Map<String, String> pendingBackfills = this.backfillChunkSize > 0 && connection != null ? new BackfillStore(connection).pending() : Collections.emptyMap();
+        final PlanOptimizer optimizer = new PlanOptimizer(database.getType());
+        final CostEstimator estimator = this.estimateCosts ? new CostEstimator(database.getType(), this.onlineDdl, this.scanBytesPerSecond, this.scanRowsPerSecond) : null;
+
+        final Stream<List<TableMigration>> planned;
+        if (this.dataSource != null && this.offlineSnapshot == null) {
+            final Map<String, List<TableMigration>> byTable = new LinkedHashMap<>();
+            for (final TableMigration tableMigration : this.planInParallel(tables, snapshot, pendingBackfills, listener)) {
+                byTable.computeIfAbsent(tableMigration.getTableName().toUpperCase(Locale.ROOT), k -> new ArrayList<>()).add(tableMigration);
+            }
+            planned = byTable.values().stream();
+        } else {
+            final Map<String, List<CompiledModel>> byTable = new LinkedHashMap<>();
+            for (final CompiledModel table : tables) {
+                byTable.computeIfAbsent(table.getTableName().toUpperCase(Locale.ROOT), k -> new ArrayList<>()).add(table);
+            }
+            planned = byTable.values().stream().map(sameTable -> {
+                final List<TableMigration> tableMigrations = new ArrayList<>();
+                for (final CompiledModel table : sameTable) {
+                    try {
+                        tableMigrations.add(this.planTable(table, introspector, snapshot, pendingBackfills, listener));
+                    } catch (final SQLException e) {
+                        throw new MigrationException(e);
                     }
                 }
+                return tableMigrations;
+            });
+        }
+
+        return planned
+            .map(optimizer::optimize)
+            .filter(t -> !t.isEmpty())
+            .map(t -> {
+                if (estimator != null) {
+                    estimator.estimate(t);
+                }
+                t.getStatements().addAll(this.render(t));
+                return t;
+            });
+    }
+
+    private List<TableMigration> planInParallel(final List<CompiledModel> tables, final SchemaSnapshot snapshot, final Map<String, String> pendingBackfills, final MigrationListener listener) throws SQLException {
+        if (tables.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, tables.size()));
+        try {
+            final List<Future<TableMigration>> futures = new ArrayList<>();
+            for (final CompiledModel table : tables) {
+                futures.add(executor.submit(() -> {
+                    try (final Connection connection = this.dataSource.getConnection();
+                         final SchemaIntrospector introspector = new SchemaIntrospector(database.getType(), connection)) {
+                        return this.planTable(table, introspector, snapshot, pendingBackfills, listener);
+                    }
+                }));
+            }
+
+            // collected in queue order, so the script does not depend on which table finished first
+            final List<TableMigration> tableMigrations = new ArrayList<>();
+            for (final Future<TableMigration> future : futures) {
+                tableMigrations.add(future.get());
+            }
+            return tableMigrations;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("parallel schema diff failed", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while diffing the schema", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                System.out.println("now generating table");
-                script.append("\n").append(table.create());
-                System.out.println("now creating indexes");
-                script.append("\n").append(table.createIndexes());
+    private TableMigration planTable(final CompiledModel table, final SchemaIntrospector introspector, final SchemaSnapshot snapshot, final Map<String, String> pendingBackfills, final MigrationListener listener) throws SQLException {
+        final long start = System.nanoTime();
+
+        final List<DatabaseFieldType> schemaFoundInDatabase = snapshot != null ? snapshot.getColumns(table.getTableName()) : getDatabaseFieldTypes(introspector, table);
+        final List<Indexes> indexesFound = snapshot != null ? snapshot.getIndexes(table.getTableName()) : getIndexes(introspector, table);
+
+        final TableMigration tableMigration = new TableMigration(table.getTableName());
+        tableMigration.setExistingIndexes(indexesFound);
+        final List<MigrationOperation> operations = tableMigration.getOperations();
+
+        if (schemaFoundInDatabase.isEmpty()) {
+            for (final Indexes i : indexesFound) {
+                operations.add(new DropIndex(table.getTableName(), i.getName()));
+            }
 
+            operations.add(new CreateTable(table));
+            for (final Indexes index : table.getIndexes()) {
+                operations.add(new CreateIndex(table.getTableName(), index));
+            }
+            tableMigration.setStatistics(TableStatistics.EMPTY);
+
+        } else {
+            final ColumnDiff columnDiff = new ColumnDiff(schemaFoundInDatabase);
+            final List<ModelColumn> columnsToBeCreated = columnDiff.missing(table.getColumns());
+            final List<AlterColumn> changedColumns = this.changedColumns(table, columnDiff, pendingBackfills);
+
+            if (database.getType() == Database.Type.SqlLite && !changedColumns.isEmpty()) {
+                // SQLite cannot alter a column, the rebuilt table gets the new columns as well
+                logger.info("rebuilding {} for {} changed columns", table.getTableName(), changedColumns.size());
+                if (this.offlineSnapshot != null) {
+                    throw new SQLFeatureNotSupportedException("cannot rebuild " + table.getTableName() + " from a snapshot, which does not keep its CREATE TABLE statement");
+                }
+                operations.add(new RebuildTable(table, schemaFoundInDatabase, changedColumns,
+                    introspector.getSQLiteTableDefinition(table.getTableName()), introspector.getSQLiteTriggers(table.getTableName()),
+                    introspector.getSQLiteIndexDefinitions(table.getTableName())));
+            } else if (columnsToBeCreated.isEmpty()) {
+                logger.info("No new fields found");
             } else {
-                final List<IncomingDatabaseFieldType> incomingDatabaseFieldTypes =
-                    determineFieldsToBeCreated(
-                        table.getDatabaseField(),
-                        schemaFoundInDatabase
-                    );
-
-                if (incomingDatabaseFieldTypes.isEmpty()) {
-                    logger.info("No new fields found");
-                } else {
-                    logger.info("total new fields found - {}", incomingDatabaseFieldTypes.size());
-                    script.append(this.alterTable(table, incomingDatabaseFieldTypes));
+                logger.info("total new fields found - {}", columnsToBeCreated.size());
+                for (final ModelColumn column : columnsToBeCreated) {
+                    final String backfillValue = column.getBackfillValue(database.getType());
+                    if (this.backfillChunkSize == 0 || backfillValue == null) {
+                        operations.add(new AddColumn(table.getTableName(), column.getFieldName(), column.getDefinition(database.getType()), false));
+                    } else if (database.getType() == Database.Type.SqlLite) {
+                        // a constant default fills existing rows without rewriting the table
+                        operations.add(new AddColumn(table.getTableName(), column.getFieldName(), column.getDefinition(database.getType()) + " DEFAULT " + backfillValue, false));
+                    } else {
+                        operations.add(new AddColumn(table.getTableName(), column.getFieldName(), column.getNullableDefinition(database.getType()), true));
+                        tableMigration.getBackfills().add(this.backfill(table, column));
+                    }
                 }
-                //to do update the indexes
+            }
+            if (database.getType() != Database.Type.SqlLite) {
+                operations.addAll(changedColumns);
+            }
+
+            this.diffIndexes(table, indexesFound, tableMigration);
+            this.resumeBackfills(table, tableMigration, pendingBackfills);
+
+            if (this.estimateCosts && !tableMigration.isEmpty()) {
+                tableMigration.setStatistics(introspector != null ? introspector.statistics(table.getTableName()) : snapshot.getStatistics(table.getTableName()));
             }
         }
 
-        return script.toString();
+        listener.tablePlanned(table.getTableName(), Duration.ofNanos(System.nanoTime() - start));
+        return tableMigration;
+    }
 
+    /**
+     * The columns of the table whose type or nullability no longer matches the model. Columns with an unfinished
+     * backfill stay nullable until the backfill tightens them.
+     */
+    private List<AlterColumn> changedColumns(final CompiledModel table, final ColumnDiff columnDiff, final Map<String, String> pendingBackfills) {
+        final List<AlterColumn> changed = new ArrayList<>();
+        for (final ModelColumn column : table.getColumns()) {
+            if (pendingBackfills.containsKey(BackfillStore.key(table.getTableName(), column.getFieldName()))) {
+                continue;
+            }
+            final AlterColumn alterColumn = columnDiff.changed(table.getTableName(), column, database.getType());
+            if (alterColumn != null) {
+                changed.add(alterColumn);
+            }
+        }
+        return changed;
     }
 
-    public void migrate() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
-        final String generate = this.generate();
+    /**
+     * Renders the optimized operations of a table. Changes to an existing table go through one {@link AlterTable};
+     * a table created by this plan is empty, so its indexes are built with plain statements. A rebuilt table takes
+     * the indexes of the old one with it, except those the plan drops.
+     */
+    private List<MigrationStatement> render(final TableMigration tableMigration) {
+        final Database.Type type = database.getType();
+        final String tableName = tableMigration.getTableName();
+        final boolean created = tableMigration.getOperations().stream().anyMatch(o -> o instanceof CreateTable);
+        final boolean rebuilt = tableMigration.isAtomic();
+        final AlterTable alterTable = new AlterTable(type, tableName, this.onlineDdl && !created);
+        final List<MigrationStatement> statements = new ArrayList<>();
+        final List<MigrationStatement> indexStatements = new ArrayList<>();
+
+        for (final MigrationOperation operation : tableMigration.getOperations()) {
+            if (operation instanceof CreateTable) {
+                statements.add(new MigrationStatement(((CreateTable) operation).getModel().getCreateStatement(type)));
+            } else if (operation instanceof AddColumn) {
+                alterTable.addColumn(((AddColumn) operation).getDefinition());
+            } else if (operation instanceof AlterColumn) {
+                alterTable.alterColumn((AlterColumn) operation);
+            } else if (operation instanceof RebuildTable) {
+                statements.addAll(((RebuildTable) operation).statements(type, this.rebuiltIndexes(tableMigration)));
+            } else if (operation instanceof DropIndex && rebuilt) {
+                // dropped along with the old table
+                continue;
+            } else if (operation instanceof DropIndex && created) {
+                statements.add(new MigrationStatement("DROP INDEX " + ((DropIndex) operation).getIndexName()));
+            } else if (operation instanceof DropIndex) {
+                alterTable.dropIndex(((DropIndex) operation).getIndexName());
+            } else if (operation instanceof CreateIndex && created) {
+                indexStatements.add(new MigrationStatement(Table.createIndexStatement(((CreateIndex) operation).getIndex(), tableName)));
+            } else if (operation instanceof CreateIndex) {
+                alterTable.addIndex(((CreateIndex) operation).getIndex());
+            }
+        }
 
-        if (generate.isEmpty()) {
-            logger.info("No overall change found");
-            return;
+        statements.addAll(alterTable.statements());
+        statements.addAll(indexStatements);
+        return statements;
+    }
+
+    private List<Indexes> rebuiltIndexes(final TableMigration tableMigration) {
+        final Set<String> dropped = new HashSet<>();
+        for (final MigrationOperation operation : tableMigration.getOperations()) {
+            if (operation instanceof DropIndex) {
+                dropped.add(((DropIndex) operation).getIndexName().toUpperCase(Locale.ROOT));
+            }
+        }
+
+        final List<Indexes> indexes = new ArrayList<>();
+        for (final Indexes index : tableMigration.getExistingIndexes()) {
+            // SQLite creates the indexes of PRIMARY KEY and UNIQUE constraints itself
+            if (!dropped.contains(index.getName().toUpperCase(Locale.ROOT)) && !index.getName().startsWith("sqlite_autoindex_")) {
+                indexes.add(index);
+            }
         }
+        return indexes;
+    }
 
-        System.out.println(generate);
+    /**
+     * Applies the plan on one connection, borrowed from the database's data source for the length of the migration
+     * when it has one.
+     */
+    public MigrationResult migrate() throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        return this.migrate(this.listener);
+    }
 
-        Arrays.asList(generate.split(";")).forEach(st -> {
-            try (final Statement stmt = database.getConnection().createStatement()) {
-                stmt.execute(st);
-            } catch (final SQLException e) {
-                logger.error(e.getMessage());
+    private MigrationResult migrate(final MigrationListener listener) throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        if (this.offlineSnapshot != null) {
+            throw new IllegalStateException("a plan diffed against a snapshot is for review only, migrate without snapshot(...)");
+        }
+        if (this.parallelApply && this.dataSource == null) {
+            throw new IllegalStateException("parallelApply needs a data source, see parallel(...)");
+        }
+        try (final ConnectionLease lease = database.lease()) {
+            return this.migrate(lease.getConnection(), listener);
+        }
+    }
+
+    /**
+     * Like {@link #migrate()}, on a virtual thread where the runtime has them and a daemon thread otherwise. The
+     * returned future also completes per table, see {@link MigrationFuture#table(String)}. The interpreter must not
+     * be reconfigured until the migration is done.
+     */
+    public MigrationFuture migrateAsync() {
+        return this.migrateAsync(DEFAULT_ASYNC_EXECUTOR);
+    }
+
+    public MigrationFuture migrateAsync(final Executor executor) {
+        final List<CompiledModel> tables;
+        try {
+            tables = this.compiledModels();
+        } catch (final NoFieldDefinedException | TableAnnotationNotFound e) {
+            final MigrationFuture future = new MigrationFuture(List.of());
+            future.finish(null, e);
+            return future;
+        }
+
+        final MigrationFuture future = new MigrationFuture(tables.stream().map(CompiledModel::getTableName).collect(Collectors.toList()));
+        // the tracking listener is passed down rather than set on the interpreter, which other threads may read
+        final MigrationListener listener = future.tracking(this.listener);
+        executor.execute(() -> {
+            MigrationResult result = null;
+            Throwable exception = null;
+            try {
+                result = this.migrate(listener);
+            } catch (final Throwable e) {
+                exception = e;
             }
+            future.finish(result, exception);
         });
+        return future;
     }
 
-    private List<Indexes> getIndexes(final Table table) {
-        List<Indexes> indexesFound = new ArrayList<>();
+    /**
+     * Virtual threads need Java 21, the migrator runs on 17.
+     */
+    private static Executor asyncExecutor() {
         try {
-            indexesFound = this.getIndexes(table.getTableName());
-        } catch (final SQLException e) {
-            logger.error(e.getMessage());
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            return task -> {
+                final Thread thread = new Thread(task, "ormlite-migrator-async");
+                thread.setDaemon(true);
+                thread.start();
+            };
         }
-        return indexesFound;
     }
 
-    private List<DatabaseFieldType> getDatabaseFieldTypes(final Table table) {
-        List<DatabaseFieldType> schemaFoundInDatabase = new ArrayList<>();
+    private MigrationResult migrate(final Connection connection, final MigrationListener listener) throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        if (this.lockWait == null) {
+            return this.migrateSchema(connection, listener);
+        }
+
+        final long start = System.nanoTime();
+        String lockName = "ormlite_migrator_" + (this.fingerprintScope != null ? this.fingerprintScope : DEFAULT_FINGERPRINT_SCOPE);
+        if (this.lockTenant != null) {
+            // a hash, tenants may be connection strings that are long or carry credentials
+            lockName += "_" + Long.toHexString(UUID.nameUUIDFromBytes(this.lockTenant.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits());
+        }
+        final MigrationLock lock = MigrationLock.acquire(database, connection, this.lockTenantSource, lockName, this.lockLease, this.lockWait);
+        phaseFinished(listener, MigrationPhase.LOCK, start);
+
+        if (lock == null) {
+            logger.warn("migration lock {} still held by another node after {}, skipping the migration", lockName, this.lockWait);
+            final MigrationResult result = new MigrationResult();
+            result.setSkipped(true);
+            listener.migrationFinished(result);
+            return result;
+        }
+
         try {
-            schemaFoundInDatabase = this.getSchema(table.getTableName());
-        } catch (final SQLException e) {
-            logger.error(e.getMessage());
+            return this.migrateSchema(connection, listener);
+        } finally {
+            lock.release();
         }
-        return schemaFoundInDatabase;
     }
 
-    private Table fetchTable(final Class model) throws ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
-        final Class c = Class.forName(model.getName());
+    private MigrationResult migrateSchema(final Connection connection, final MigrationListener listener) throws ClassNotFoundException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        long mark = System.nanoTime();
+        final List<CompiledModel> tables = this.compiledModels();
+        final String fingerprint = this.fingerprintScope != null ? SchemaFingerprint.of(database.getType(), tables) : null;
+
+        if (fingerprint != null) {
+            final boolean unchanged = this.fingerprintMatches(connection, fingerprint);
+            mark = phaseFinished(listener, MigrationPhase.FINGERPRINT, mark);
+            if (unchanged) {
+                logger.info("Schema fingerprint unchanged, skipping introspection");
+                final MigrationResult result = new MigrationResult();
+                result.setUnchanged(true);
+                listener.migrationFinished(result);
+                return result;
+            }
+        }
 
-        final DatabaseTable dTable = (DatabaseTable) c.getAnnotation(DatabaseTable.class);
+        final List<TableMigration> plan = this.diff(connection, tables, listener);
+        mark = phaseFinished(listener, MigrationPhase.DIFF, mark);
+        listener.planned(plan);
+
+        final MigrationResult result;
+        if (plan.isEmpty()) {
+            logger.info("No overall change found");
+            result = new MigrationResult();
+        } else {
+            plan.forEach(t -> t.getStatements().forEach(st -> logger.info("{};", st.getSql())));
+
+            final List<ColumnBackfill> backfills = new ArrayList<>();
+            plan.forEach(t -> backfills.addAll(t.getBackfills()));
+            final BackfillStore backfillStore = new BackfillStore(connection);
+            for (final ColumnBackfill backfill : backfills) {
+                // registered before the column is added, so a crash in between still resumes
+                backfillStore.register(backfill);
+            }
+            final Map<String, String> checkpoints = backfills.isEmpty() ? Collections.emptyMap() : backfillStore.pending();
 
-        if (dTable == null) {
-            throw new TableAnnotationNotFound();
+            final MigrationExecutor executor = new MigrationExecutor(database.getType(), connection, this.batchSize, listener);
+            if (this.parallelApply) {
+                final ParallelExecutor parallelExecutor = new ParallelExecutor(database.getType(), this.dataSource, this.parallelism, this.batchSize, this.transactional, listener);
+                result = parallelExecutor.apply(new DependencyGraph(tables).levels(plan));
+            } else {
+                result = this.transactional ? executor.applyTransactionally(plan) : executor.apply(plan);
+            }
+            mark = phaseFinished(listener, MigrationPhase.EXECUTION, mark);
+
+            if (!backfills.isEmpty()) {
+                new Backfiller(connection, executor, this.backfillChunkSize, this.backfillPause, listener).run(backfills, checkpoints, result);
+                phaseFinished(listener, MigrationPhase.BACKFILL, mark);
+            }
+
+            logger.info("executed {} statements in {} batches ({} ms), {} failed",
+                result.getExecutedStatements(), result.getBatches(), result.getElapsed().toMillis(), result.getFailures().size());
         }
-        String tableName = dTable.tableName();
 
-        if (tableName.isEmpty()) {
-            tableName = c.getSimpleName();
+        if (fingerprint != null && !result.hasFailures()) {
+            try {
+                new FingerprintStore(connection).write(this.fingerprintScope, fingerprint);
+            } catch (final SQLException e) {
+                // the schema is migrated, the next run just takes the slow path again
+                logger.error("could not store the schema fingerprint - {}", e.getMessage());
+            }
         }
 
-        final Field[] fields = c.getDeclaredFields();
+        listener.migrationFinished(result);
+        return result;
+    }
+
+    private static long phaseFinished(final MigrationListener listener, final MigrationPhase phase, final long start) {
+        final long now = System.nanoTime();
+        listener.phaseFinished(phase, Duration.ofNanos(now - start));
+        return now;
+    }
+
+    private ColumnBackfill backfill(final CompiledModel table, final ModelColumn column) {
+        final String keyColumn = table.getColumns().stream()
+            .filter(c -> c.isId() || c.isGeneratedId())
+            .map(ModelColumn::getFieldName)
+            .findFirst()
+            .orElse(null);
+
+        return new ColumnBackfill(
+            table.getTableName(),
+            column.getFieldName(),
+            keyColumn,
+            column.getBackfillValue(database.getType()),
+            new AlterTable(database.getType(), table.getTableName(), this.onlineDdl).setNotNull(column.getFieldName(), column.getDefinition(database.getType()))
+        );
+    }
 
-        final List<IncomingDatabaseFieldType> incomingFields = Arrays.
-            stream(fields).
-            filter(f -> f.getAnnotation(DatabaseField.class) != null).
-            map(f -> new IncomingDatabaseFieldType(f.getName(), f.getAnnotation(DatabaseField.class), f.getType())).
-            collect(Collectors.toList());
+    /**
+     * Plans the backfills an earlier migration left unfinished. Their columns already exist, so the diff
+     * does not see them.
+     */
+    private void resumeBackfills(final CompiledModel table, final TableMigration tableMigration, final Map<String, String> pendingBackfills) {
+        for (final ModelColumn column : table.getColumns()) {
+            final boolean planned = tableMigration.getBackfills().stream().anyMatch(b -> b.getColumnName().equalsIgnoreCase(column.getFieldName()));
+            if (!planned && pendingBackfills.containsKey(BackfillStore.key(table.getTableName(), column.getFieldName())) && column.getBackfillValue(database.getType()) != null) {
+                logger.info("resuming the unfinished backfill of {}.{}", table.getTableName(), column.getFieldName());
+                tableMigration.getBackfills().add(this.backfill(table, column));
+            }
+        }
+    }
 
+    private SchemaSnapshot getSnapshot(final SchemaIntrospector introspector, final List<CompiledModel> tables) {
+        final List<String> tableNames = tables.stream().map(CompiledModel::getTableName).collect(Collectors.toList());
+        try {
+            return introspector.snapshot(tableNames);
+        } catch (final SQLException e) {
+            logger.error(e.getMessage());
+            // an unreadable snapshot should not stop the migration, fall back to one query per table
+            return null;
+        }
+    }
+
+    private List<Indexes> getIndexes(final SchemaIntrospector introspector, final CompiledModel table) {
+        List<Indexes> indexesFound = new ArrayList<>();
+        try {
+            indexesFound = introspector.getIndexes(table.getTableName());
+        } catch (final SQLException e) {
+            logger.error(e.getMessage());
+        }
+        return indexesFound;
+    }
 
-        if (incomingFields.isEmpty()) {
-            throw new NoFieldDefinedException();
+    private List<DatabaseFieldType> getDatabaseFieldTypes(final SchemaIntrospector introspector, final CompiledModel table) {
+        List<DatabaseFieldType> schemaFoundInDatabase = new ArrayList<>();
+        try {
+            schemaFoundInDatabase = introspector.getSchema(table.getTableName());
+        } catch (final SQLException e) {
+            logger.error(e.getMessage());
         }
-        return new Table(this.database, tableName, dTable, incomingFields);
+        return schemaFoundInDatabase;
     }
 
-    private void execute(final String query) throws SQLException {
-        try (final Statement stmt = database.getConnection().createStatement()) {
-            stmt.execute(query);
+    /**
+     * Adds the declared indexes that are missing from the table, and recreates the ones whose columns or
+     * uniqueness changed. Indexes are matched by name; indexes that exist only in the database are kept.
+     */
+    private void diffIndexes(final CompiledModel table, final List<Indexes> indexesFound, final TableMigration tableMigration) {
+        final Map<String, Indexes> existing = new HashMap<>();
+        for (final Indexes index : indexesFound) {
+            existing.put(index.getName().toUpperCase(Locale.ROOT), index);
+        }
+
+        for (final Indexes index : PlanOptimizer.distinctByName(table.getIndexes())) {
+            final Indexes found = existing.get(index.getName().toUpperCase(Locale.ROOT));
+            if (found == null) {
+                logger.info("index {} is missing on {}", index.getName(), table.getTableName());
+                tableMigration.getOperations().add(new CreateIndex(table.getTableName(), index));
+            } else if (!sameDefinition(found, index)) {
+                logger.info("index {} on {} changed from {} to {}", index.getName(), table.getTableName(), found, index);
+                tableMigration.getOperations().add(new DropIndex(table.getTableName(), found.getName()));
+                tableMigration.getOperations().add(new CreateIndex(table.getTableName(), index));
+            }
         }
     }
 
-    private String alterTable(final Table table, final List<IncomingDatabaseFieldType> incomingDatabaseFields) throws SQLException {
-        final StringBuilder sb = new StringBuilder();
-        for (final IncomingDatabaseFieldType field : incomingDatabaseFields) {
-            // Standard SQL usually supports ADD COLUMN.
-            // MySQL, Postgres, SQLite, H2 all support this.
-            sb.append("ALTER TABLE ").append(table.getTableName()).append(" ADD COLUMN ").append(field.generateStatement(database.getType())).append(";");
+    private static boolean sameDefinition(final Indexes found, final Indexes declared) {
+        if (Boolean.TRUE.equals(found.getUnique()) != Boolean.TRUE.equals(declared.getUnique())) {
+            return false;
+        }
+        if (found.getColumns().size() != declared.getColumns().size()) {
+            return false;
+        }
+        for (int i = 0; i < found.getColumns().size(); i++) {
+            // null for an expression, e.g. of a SQLite expression index, which a declared index never has
+            final String column = found.getColumns().get(i);
+            if (column == null || !column.equalsIgnoreCase(declared.getColumns().get(i))) {
+                return false;
+            }
         }
-        return sb.toString();
+        return true;
     }
 }
@@ -0,0 +1,423 @@
+package dev.snowz.ormlitemigrator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Reads columns, indexes and sizes of tables from the catalog. Table and schema names are bound as parameters, and
+ * every query is prepared once per introspector and reused for each table it reads, so the driver and the server
+ * can cache the statement across a large introspection pass. Close the introspector to release them.
+ */
+class SchemaIntrospector implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaIntrospector.class.getSimpleName());
+
+    // keeps the IN (...) lists well below the bind variable limits of every supported driver
+    private static final int MAX_TABLES_PER_QUERY = 500;
+
+    private final Database.Type type;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> prepared = new HashMap<>();
+    private String schema;
+
+    SchemaIntrospector(final Database.Type type, final Connection connection) {
+        this.type = type;
+        this.connection = connection;
+    }
+
+    List<DatabaseFieldType> getSchema(final String tableName) throws SQLException {
+        final List<DatabaseFieldType> fields = new ArrayList<>();
+        final PreparedStatement stmt;
+        if (type == Database.Type.SqlLite) {
+            stmt = prepare("SELECT name, type, \"notnull\" FROM pragma_table_info(?) ORDER BY cid");
+            stmt.setString(1, tableName);
+        } else {
+            // Postgres folds unquoted names to lower case and H2 to upper case, so match case-insensitively; the
+            // schema keeps tables of the same name in other schemas, e.g. of other tenants, out
+            stmt = prepare("SELECT column_name, data_type, is_nullable, character_maximum_length FROM information_schema.columns " +
+                "WHERE table_schema = ? AND UPPER(table_name) = ? ORDER BY ordinal_position");
+            stmt.setString(1, currentSchema());
+            stmt.setString(2, tableName.toUpperCase(Locale.ROOT));
+        }
+
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (type == Database.Type.SqlLite) {
+                    fields.add(new DatabaseFieldType(rs.getString("name"), rs.getString("type"), rs.getInt("notnull") == 0, null));
+                } else {
+                    fields.add(new DatabaseFieldType(rs.getString("column_name"), rs.getString("data_type"),
+                        "YES".equalsIgnoreCase(rs.getString("is_nullable")), length(rs, "character_maximum_length")));
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    List<Indexes> getIndexes(final String tableName) throws SQLException {
+        if (type == Database.Type.SqlLite) {
+            return getSQLiteIndexes(tableName);
+        }
+
+        if (type == Database.Type.Postgres || type == Database.Type.H2) {
+            return getMetadataIndexes(tableName);
+        }
+
+        final SchemaSnapshot snapshot = new SchemaSnapshot();
+        try {
+            readStatistics(snapshot, Collections.singletonList(tableName));
+        } catch (final SQLException e) {
+            // not a real MySQL catalog, e.g. H2 in MySQL mode
+            logger.info("information_schema.statistics is not readable, reading index metadata - {}", e.getMessage());
+            return getMetadataIndexes(tableName);
+        }
+        return new ArrayList<>(snapshot.getIndexes(tableName));
+    }
+
+    private List<Indexes> getMetadataIndexes(final String tableName) throws SQLException {
+        // getIndexInfo matches the table name exactly, and unquoted names are folded to lower case by
+        // Postgres but to upper case by H2
+        final Set<String> candidates = new LinkedHashSet<>(Arrays.asList(
+            tableName, tableName.toLowerCase(Locale.ROOT), tableName.toUpperCase(Locale.ROOT)));
+
+        for (final String candidate : candidates) {
+            final Map<String, Indexes> indexes = new LinkedHashMap<>();
+            // MySQL drivers report the database as the catalog and ignore the schema
+            final String schemaPattern = type == Database.Type.MySQL || type == Database.Type.MariaDB ? null : currentSchema();
+            try (final ResultSet rs = connection.getMetaData().getIndexInfo(null, schemaPattern, candidate, false, true)) {
+                while (rs.next()) {
+                    final String indexName = rs.getString("INDEX_NAME");
+                    if (indexName == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    final Indexes index = indexes.computeIfAbsent(indexName, Indexes::new);
+                    index.setUnique(!rs.getBoolean("NON_UNIQUE"));
+                    index.getColumns().add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            if (!indexes.isEmpty()) {
+                return new ArrayList<>(indexes.values());
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Indexes> getSQLiteIndexes(final String tableName) throws SQLException {
+        final PreparedStatement stmt = prepare("SELECT l.name AS index_name, l.\"unique\" AS is_unique, i.name AS column_name " +
+            "FROM pragma_index_list(?) l JOIN pragma_index_info(l.name) i " +
+            "ORDER BY l.seq, i.seqno");
+
+        final Map<String, Indexes> indexes = new LinkedHashMap<>();
+        stmt.setString(1, tableName);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                final Indexes index = indexes.computeIfAbsent(rs.getString("index_name"), Indexes::new);
+                index.setUnique(rs.getBoolean("is_unique"));
+                index.getColumns().add(rs.getString("column_name"));
+            }
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    /**
+     * The CREATE TABLE statement SQLite keeps for the table, as it was written, or null when there is none.
+     */
+    String getSQLiteTableDefinition(final String tableName) throws SQLException {
+        final List<String> definitions = sqliteMaster("table", tableName);
+        return definitions.isEmpty() ? null : definitions.get(0);
+    }
+
+    /**
+     * The CREATE TRIGGER statements of the triggers on the table, which are dropped along with it.
+     */
+    List<String> getSQLiteTriggers(final String tableName) throws SQLException {
+        return sqliteMaster("trigger", tableName);
+    }
+
+    /**
+     * The CREATE INDEX statements of the table's indexes by index name, e.g. of expression and partial indexes, which
+     * the index columns do not describe. Indexes SQLite creates for constraints have none.
+     */
+    Map<String, String> getSQLiteIndexDefinitions(final String tableName) throws SQLException {
+        return sqliteMasterByName("index", tableName);
+    }
+
+    private List<String> sqliteMaster(final String objectType, final String tableName) throws SQLException {
+        return new ArrayList<>(sqliteMasterByName(objectType, tableName).values());
+    }
+
+    private Map<String, String> sqliteMasterByName(final String objectType, final String tableName) throws SQLException {
+        final PreparedStatement stmt = prepare("SELECT name, sql FROM sqlite_master WHERE type = ? AND tbl_name = ? COLLATE NOCASE AND sql IS NOT NULL ORDER BY rowid");
+        stmt.setString(1, objectType);
+        stmt.setString(2, tableName);
+
+        final Map<String, String> statements = new LinkedHashMap<>();
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                statements.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Reads the columns and indexes of all the given tables with set-based queries instead of
+     * one round trip per table.
+     */
+    SchemaSnapshot snapshot(final Collection<String> tableNames) throws SQLException {
+        final SchemaSnapshot snapshot = new SchemaSnapshot();
+        final List<String> names = new ArrayList<>(new LinkedHashSet<>(tableNames));
+
+        for (int from = 0; from < names.size(); from += MAX_TABLES_PER_QUERY) {
+            final List<String> chunk = names.subList(from, Math.min(names.size(), from + MAX_TABLES_PER_QUERY));
+            readColumns(snapshot, chunk);
+            readIndexes(snapshot, chunk);
+        }
+
+        return snapshot;
+    }
+
+    private void readColumns(final SchemaSnapshot snapshot, final List<String> tableNames) throws SQLException {
+        final String query;
+        if (type == Database.Type.SqlLite) {
+            query = "SELECT m.name AS table_name, p.name AS column_name, p.type AS data_type, p.\"notnull\" AS not_null " +
+                "FROM sqlite_master m JOIN pragma_table_info(m.name) p " +
+                "WHERE m.type = 'table' AND UPPER(m.name) IN (" + placeholders(tableNames.size()) + ") " +
+                "ORDER BY m.name, p.cid";
+        } else {
+            query = "SELECT table_name, column_name, data_type, is_nullable, character_maximum_length FROM information_schema.columns " +
+                "WHERE table_schema = ? AND UPPER(table_name) IN (" + placeholders(tableNames.size()) + ") " +
+                "ORDER BY table_name, ordinal_position";
+        }
+
+        final PreparedStatement stmt = prepare(query);
+        bindTableNames(stmt, tableNames);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                snapshot.addColumn(
+                    rs.getString("table_name"),
+                    new DatabaseFieldType(
+                        rs.getString("column_name"),
+                        rs.getString("data_type"),
+                        type == Database.Type.SqlLite ? rs.getInt("not_null") == 0 : "YES".equalsIgnoreCase(rs.getString("is_nullable")),
+                        type == Database.Type.SqlLite ? null : length(rs, "character_maximum_length")
+                    )
+                );
+            }
+        }
+    }
+
+    private void readIndexes(final SchemaSnapshot snapshot, final List<String> tableNames) throws SQLException {
+        if (type == Database.Type.SqlLite) {
+            readSQLiteIndexes(snapshot, tableNames);
+            return;
+        }
+
+        if (type == Database.Type.Postgres) {
+            try {
+                readPostgresIndexes(snapshot, tableNames);
+                return;
+            } catch (final SQLException e) {
+                // not a real Postgres catalog, e.g. H2 in PostgreSQL mode
+                logger.info("pg_index is not readable, reading indexes table by table - {}", e.getMessage());
+            }
+        }
+
+        if (type == Database.Type.MySQL || type == Database.Type.MariaDB) {
+            try {
+                readStatistics(snapshot, tableNames);
+                return;
+            } catch (final SQLException e) {
+                // not a real MySQL catalog, e.g. H2 in MySQL mode
+                logger.info("information_schema.statistics is not readable, reading indexes table by table - {}", e.getMessage());
+            }
+        }
+
+        for (final String tableName : tableNames) {
+            for (final Indexes index : getMetadataIndexes(tableName)) {
+                snapshot.addIndex(tableName, index);
+            }
+        }
+    }
+
+    private void readStatistics(final SchemaSnapshot snapshot, final List<String> tableNames) throws SQLException {
+        final PreparedStatement stmt = prepare("SELECT table_name, index_name, non_unique, column_name FROM information_schema.statistics " +
+            "WHERE table_schema = ? AND UPPER(table_name) IN (" + placeholders(tableNames.size()) + ") " +
+            "ORDER BY table_name, index_name, seq_in_index");
+
+        bindTableNames(stmt, tableNames);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                snapshot.addIndexColumn(
+                    rs.getString("table_name"),
+                    rs.getString("index_name"),
+                    rs.getInt("non_unique") == 0,
+                    rs.getString("column_name")
+                );
+            }
+        }
+    }
+
+    private void readSQLiteIndexes(final SchemaSnapshot snapshot, final List<String> tableNames) throws SQLException {
+        // one pass over the table-valued pragmas instead of PRAGMA index_info per index
+        final PreparedStatement stmt = prepare("SELECT m.name AS table_name, l.name AS index_name, l.\"unique\" AS is_unique, i.name AS column_name " +
+            "FROM sqlite_master m " +
+            "JOIN pragma_index_list(m.name) l " +
+            "JOIN pragma_index_info(l.name) i " +
+            "WHERE m.type = 'table' AND UPPER(m.name) IN (" + placeholders(tableNames.size()) + ") " +
+            "ORDER BY m.name, l.seq, i.seqno");
+
+        bindTableNames(stmt, tableNames);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                snapshot.addIndexColumn(
+                    rs.getString("table_name"),
+                    rs.getString("index_name"),
+                    rs.getBoolean("is_unique"),
+                    rs.getString("column_name")
+                );
+            }
+        }
+    }
+
+    private void readPostgresIndexes(final SchemaSnapshot snapshot, final List<String> tableNames) throws SQLException {
+        final PreparedStatement stmt = prepare("SELECT t.relname AS table_name, i.relname AS index_name, ix.indisunique AS is_unique, a.attname AS column_name " +
+            "FROM pg_index ix " +
+            "JOIN pg_class t ON t.oid = ix.indrelid " +
+            "JOIN pg_class i ON i.oid = ix.indexrelid " +
+            "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+            "JOIN LATERAL unnest(ix.indkey) WITH ORDINALITY AS k(attnum, ord) ON true " +
+            "JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = k.attnum " +
+            "WHERE n.nspname = ? AND UPPER(t.relname) IN (" + placeholders(tableNames.size()) + ") " +
+            "ORDER BY t.relname, i.relname, k.ord");
+
+        bindTableNames(stmt, tableNames);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                snapshot.addIndexColumn(
+                    rs.getString("table_name"),
+                    rs.getString("index_name"),
+                    rs.getBoolean("is_unique"),
+                    rs.getString("column_name")
+                );
+            }
+        }
+    }
+
+    /**
+     * Reads the approximate size of a table from the catalog, without scanning it where the database allows.
+     */
+    TableStatistics statistics(final String tableName) {
+        try {
+            if (type == Database.Type.SqlLite) {
+                // the largest rowid is read from the end of the b-tree, close enough to the row count; a table
+                // name cannot be bound, and the name comes from the model
+                try (final Statement stmt = connection.createStatement();
+                     final ResultSet rs = stmt.executeQuery("SELECT MAX(rowid) FROM " + tableName)) {
+                    return sqliteStatistics(tableName, rs.next() ? rs.getLong(1) : -1);
+                }
+            }
+            if (type == Database.Type.H2) {
+                // H2 keeps the row count, COUNT(*) does not scan
+                try (final Statement stmt = connection.createStatement();
+                     final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + tableName)) {
+                    return rs.next() ? new TableStatistics(rs.getLong(1), -1) : TableStatistics.UNKNOWN;
+                }
+            }
+
+            final PreparedStatement stmt;
+            if (type == Database.Type.Postgres) {
+                stmt = prepare("SELECT c.reltuples, pg_total_relation_size(c.oid), pg_indexes_size(c.oid) FROM pg_class c " +
+                    "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                    "WHERE n.nspname = ? AND c.relkind = 'r' AND UPPER(c.relname) = ?");
+            } else {
+                stmt = prepare("SELECT table_rows, data_length + index_length, index_length FROM information_schema.tables " +
+                    "WHERE table_schema = ? AND UPPER(table_name) = ?");
+            }
+            bindTableNames(stmt, Collections.singletonList(tableName));
+            try (final ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    // reltuples is -1 on Postgres tables that were never analyzed
+                    return new TableStatistics(Math.max(-1, (long) rs.getDouble(1)), rs.getLong(2), rs.getLong(3));
+                }
+            }
+        } catch (final SQLException e) {
+            logger.info("no statistics for {} - {}", tableName, e.getMessage());
+        }
+        return TableStatistics.UNKNOWN;
+    }
+
+    /**
+     * Sizes a SQLite table by its pages in the {@code dbstat} virtual table, which not every build of SQLite
+     * includes.
+     */
+    private TableStatistics sqliteStatistics(final String tableName, final long rows) {
+        try {
+            final PreparedStatement stmt = prepare("SELECT SUM(d.pgsize), SUM(CASE WHEN m.type = 'index' THEN d.pgsize ELSE 0 END) " +
+                "FROM dbstat d JOIN sqlite_master m ON m.name = d.name WHERE m.tbl_name = ?");
+            stmt.setString(1, tableName);
+            try (final ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new TableStatistics(rows, rs.getLong(1), rs.getLong(2));
+                }
+            }
+        } catch (final SQLException e) {
+            logger.info("dbstat is not available - {}", e.getMessage());
+        }
+        return new TableStatistics(rows, -1);
+    }
+
+    /**
+     * The statement for the query, prepared on first use and reused for every later table.
+     */
+    private PreparedStatement prepare(final String query) throws SQLException {
+        PreparedStatement stmt = prepared.get(query);
+        if (stmt == null) {
+            logger.info(query);
+            stmt = connection.prepareStatement(query);
+            prepared.put(query, stmt);
+        }
+        return stmt;
+    }
+
+    private void bindTableNames(final PreparedStatement stmt, final List<String> tableNames) throws SQLException {
+        int parameter = 1;
+        if (type != Database.Type.SqlLite) {
+            stmt.setString(parameter++, currentSchema());
+        }
+        for (final String tableName : tableNames) {
+            stmt.setString(parameter++, tableName.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private String currentSchema() throws SQLException {
+        if (schema == null) {
+            // MySQL and MariaDB drivers report the database as the catalog and leave the schema empty
+            schema = connection.getSchema() != null ? connection.getSchema() : connection.getCatalog();
+        }
+        return schema;
+    }
+
+    private static String placeholders(final int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Integer length(final ResultSet rs, final String column) throws SQLException {
+        final long length = rs.getLong(column);
+        return rs.wasNull() || length > Integer.MAX_VALUE ? null : (int) length;
+    }
+
+    @Override
+    public void close() {
+        for (final PreparedStatement stmt : prepared.values()) {
+            try {
+                stmt.close();
+            } catch (final SQLException e) {
+                logger.warn("could not close an introspection statement - {}", e.getMessage());
+            }
+        }
+        prepared.clear();
+    }
+}
@@ -0,0 +1,251 @@
+package dev.snowz.ormlitemigrator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-memory view of the columns and indexes of a set of tables, read up front so the
+ * per-model diff does not have to go back to the database for every table.
+ * Table names are matched case-insensitively, and kept as the database first reported them.
+ * <p>
+ * A snapshot can be written to a file and read back, so a plan can be diffed against a database without
+ * connecting to it, see {@link SchemaInterpreter#snapshot(SchemaSnapshot)}. The file has one tab-separated
+ * record per line: a header naming the database type, then per table a {@code table} line with its statistics,
+ * followed by its {@code column} and {@code index} lines. Tables are written in name order, so snapshots of
+ * the same schema are identical.
+ */
+public class SchemaSnapshot {
+
+    private static final String HEADER = "ormlite-migrator-snapshot";
+    private static final int VERSION = 1;
+
+    private final Map<String, List<DatabaseFieldType>> columns = new HashMap<>();
+    private final Map<String, List<Indexes>> indexes = new HashMap<>();
+    private final Map<String, TableStatistics> statistics = new HashMap<>();
+    // the lookup key of every table and its name as first added
+    private final Map<String, String> names = new HashMap<>();
+    private Database.Type type;
+
+    /**
+     * The database the snapshot was read from, or null when it was not recorded.
+     */
+    public Database.Type getType() {
+        return type;
+    }
+
+    public List<DatabaseFieldType> getColumns(final String tableName) {
+        return columns.getOrDefault(key(tableName), Collections.emptyList());
+    }
+
+    public List<Indexes> getIndexes(final String tableName) {
+        return indexes.getOrDefault(key(tableName), Collections.emptyList());
+    }
+
+    /**
+     * The tables that have columns, named as the database reported them.
+     */
+    public Set<String> getTableNames() {
+        final Set<String> tableNames = new LinkedHashSet<>();
+        for (final String key : columns.keySet()) {
+            tableNames.add(names.get(key));
+        }
+        return Collections.unmodifiableSet(tableNames);
+    }
+
+    public TableStatistics getStatistics(final String tableName) {
+        return statistics.getOrDefault(key(tableName), TableStatistics.UNKNOWN);
+    }
+
+    void setType(final Database.Type type) {
+        this.type = type;
+    }
+
+    void setStatistics(final String tableName, final TableStatistics tableStatistics) {
+        statistics.put(register(tableName), tableStatistics);
+    }
+
+    void addColumn(final String tableName, final DatabaseFieldType field) {
+        columns.computeIfAbsent(register(tableName), k -> new ArrayList<>()).add(field);
+    }
+
+    void addIndex(final String tableName, final Indexes index) {
+        indexes.computeIfAbsent(register(tableName), k -> new ArrayList<>()).add(index);
+    }
+
+    void addIndexColumn(final String tableName, final String indexName, final boolean unique, final String columnName) {
+        final List<Indexes> tableIndexes = indexes.computeIfAbsent(register(tableName), k -> new ArrayList<>());
+        Indexes index = null;
+        for (final Indexes i : tableIndexes) {
+            if (i.getName().equals(indexName)) {
+                index = i;
+                break;
+            }
+        }
+        if (index == null) {
+            index = new Indexes(indexName);
+            index.setUnique(unique);
+            tableIndexes.add(index);
+        }
+        index.getColumns().add(columnName);
+    }
+
+    public void write(final Path path) throws IOException {
+        try (final Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(out);
+        }
+    }
+
+    public void write(final Writer out) throws IOException {
+        out.write(line(HEADER, String.valueOf(VERSION), type != null ? type.name() : ""));
+        final SortedSet<String> keys = new TreeSet<>(columns.keySet());
+        keys.addAll(indexes.keySet());
+        for (final String key : keys) {
+            final String tableName = names.get(key);
+            final TableStatistics tableStatistics = getStatistics(tableName);
+            out.write(line("table", tableName,
+                String.valueOf(tableStatistics.getRows()), String.valueOf(tableStatistics.getBytes()), String.valueOf(tableStatistics.getIndexBytes())));
+            for (final DatabaseFieldType field : getColumns(tableName)) {
+                out.write(line("column", field.getFieldName(), field.getType(),
+                    field.getNullable() == null ? "" : field.getNullable() ? "1" : "0",
+                    field.getLength() == null ? "" : String.valueOf(field.getLength())));
+            }
+            for (final Indexes index : getIndexes(tableName)) {
+                final List<String> fields = new ArrayList<>(Arrays.asList("index", index.getName(), index.getUnique() == null ? "" : index.getUnique() ? "1" : "0"));
+                fields.addAll(index.getColumns());
+                out.write(line(fields.toArray(new String[0])));
+            }
+        }
+        out.flush();
+    }
+
+    public static SchemaSnapshot read(final Path path) throws IOException {
+        try (final BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(in);
+        }
+    }
+
+    public static SchemaSnapshot read(final BufferedReader in) throws IOException {
+        final String header = in.readLine();
+        final String[] version = header == null ? new String[0] : fields(header);
+        if (version.length < 3 || !HEADER.equals(version[0]) || !String.valueOf(VERSION).equals(version[1])) {
+            throw new IOException("not a version " + VERSION + " schema snapshot");
+        }
+
+        final SchemaSnapshot snapshot = new SchemaSnapshot();
+        snapshot.type = version[2].isEmpty() ? null : Database.Type.valueOf(version[2]);
+        String tableName = null;
+        String line;
+        int number = 1;
+        while ((line = in.readLine()) != null) {
+            number++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] fields = fields(line);
+            try {
+                switch (fields[0]) {
+                    case "table":
+                        tableName = fields[1];
+                        snapshot.setStatistics(tableName, new TableStatistics(Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                        break;
+                    case "column":
+                        snapshot.addColumn(requireTable(tableName, number), new DatabaseFieldType(fields[1], fields[2].isEmpty() ? null : fields[2],
+                            fields[3].isEmpty() ? null : "1".equals(fields[3]),
+                            fields[4].isEmpty() ? null : Integer.valueOf(fields[4])));
+                        break;
+                    case "index":
+                        final Indexes index = new Indexes(fields[1]);
+                        index.setUnique(fields[2].isEmpty() ? null : "1".equals(fields[2]));
+                        index.getColumns().addAll(Arrays.asList(fields).subList(3, fields.length));
+                        snapshot.addIndex(requireTable(tableName, number), index);
+                        break;
+                    default:
+                        throw new IOException("unknown record " + fields[0] + " on line " + number);
+                }
+            } catch (final ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException("malformed snapshot line " + number + " - " + e.getMessage(), e);
+            }
+        }
+        return snapshot;
+    }
+
+    private static String requireTable(final String tableName, final int number) throws IOException {
+        if (tableName == null) {
+            throw new IOException("record outside of a table on line " + number);
+        }
+        return tableName;
+    }
+
+    private static String line(final String... fields) {
+        final StringBuilder line = new StringBuilder();
+        for (final String field : fields) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            if (field != null) {
+                for (final char c : field.toCharArray()) {
+                    switch (c) {
+                        case '\\':
+                            line.append("\\\\");
+                            break;
+                        case '\t':
+                            line.append("\\t");
+                            break;
+                        case '\n':
+                            line.append("\\n");
+                            break;
+                        case '\r':
+                            line.append("\\r");
+                            break;
+                        default:
+                            line.append(c);
+                    }
+                }
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private static String[] fields(final String line) {
+        final String[] fields = line.split("\t", -1);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].indexOf('\\') < 0) {
+                continue;
+            }
+            final StringBuilder field = new StringBuilder();
+            for (int c = 0; c < fields[i].length(); c++) {
+                final char ch = fields[i].charAt(c);
+                if (ch != '\\' || c + 1 == fields[i].length()) {
+                    field.append(ch);
+                    continue;
+                }
+                final char escaped = fields[i].charAt(++c);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            }
+            fields[i] = field.toString();
+        }
+        return fields;
+    }
+
+    private static String key(final String tableName) {
+        return tableName.toUpperCase(Locale.ROOT);
+    }
+
+    private String register(final String tableName) {
+        final String key = key(tableName);
+        names.putIfAbsent(key, tableName);
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaSnapshot{" +
+            "columns=" + columns +
+            ", indexes=" + indexes +
+            ", statistics=" + statistics +
+            '}';
+    }
+}
@@ -0,0 +1,44 @@
+package dev.snowz.ormlitemigrator;
+
+import java.sql.SQLException;
+
+public class StatementFailure {
+
+    private final String tableName;
+    private final String statement;
+    private final SQLException exception;
+
+    public StatementFailure(final String statement, final SQLException exception) {
+        this(null, statement, exception);
+    }
+
+    public StatementFailure(final String tableName, final String statement, final SQLException exception) {
+        this.tableName = tableName;
+        this.statement = statement;
+        this.exception = exception;
+    }
+
+    /**
+     * The table the statement belongs to, or null when it did not come from a planned table.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public SQLException getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementFailure{" +
+            "tableName='" + tableName + '\'' +
+            ", statement='" + statement + '\'' +
+            ", exception=" + exception.getMessage() +
+            '}';
+    }
+}
@@ -2,6 +2,7 @@ package dev.snowz.ormlitemigrator;
 
 import com.j256.ormlite.table.DatabaseTable;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -32,7 +33,15 @@ public class Table {
     }
 
     public String create() {
-        final List<String> collect = this.databaseField.stream().map(f -> f.generateStatement(database.getType())).collect(Collectors.toList());
+        return this.createStatement() + ";";
+    }
+
+    public String createStatement() {
+        return this.createStatement(database.getType());
+    }
+
+    String createStatement(final Database.Type type) {
+        final List<String> collect = this.databaseField.stream().map(f -> f.generateStatement(type)).collect(Collectors.toList());
 
         final List<IncomingDatabaseFieldType> primaryKeys = this.databaseField.stream().filter(i -> {
             if (i.getDatabaseField() != null) {
@@ -51,28 +60,40 @@ public class Table {
 
         return "CREATE TABLE IF NOT EXISTS " + this.tableName + " (" +
             String.join(",", collect) + " " + primaryKey +
-            ");";
+            ")";
     }
 
     public String createIndexes() {
-        String script = "";
+        return this.indexStatements().stream().map(i -> i + ";").collect(Collectors.joining());
+    }
+
+    public List<String> indexStatements() {
+        return this.indexes().stream().map(i -> createIndexStatement(i, this.tableName)).collect(Collectors.toList());
+    }
+
+    public List<Indexes> indexes() {
+        final List<Indexes> indexes = new ArrayList<>();
         //Filter index with one field
-        script = script + createIndexWithOneField();
+        indexes.addAll(createIndexWithOneField());
 
         //unique indexes with one field
-        script = script + createUniqueIndex();
+        indexes.addAll(createUniqueIndex());
 
         //composite indexes
-        script = script + createCompositeIndex();
+        indexes.addAll(createCompositeIndex());
 
         //composite unqiue indexes
-        script = script + createCompositeUniqueIndexes();
+        indexes.addAll(createCompositeUniqueIndexes());
+
+        return indexes;
 
-        return script;
+    }
 
+    static String createIndexStatement(final Indexes index, final String tableName) {
+        return "CREATE " + (Boolean.TRUE.equals(index.getUnique()) ? "UNIQUE " : "") + "INDEX " + index.getName() + " ON " + tableName + "(" + String.join(",", index.getColumns()) + ")";
     }
 
-    private String createCompositeUniqueIndexes() {
+    private List<Indexes> createCompositeUniqueIndexes() {
         final Map<String, List<IncomingDatabaseFieldType>> compositeUniqueIndexes = this.databaseField.
             stream().
             filter(i -> i.getDatabaseField() != null && !i.getDatabaseField().uniqueIndexName().isEmpty()).
@@ -84,11 +105,11 @@ public class Table {
             final List<String> finalUniqueIndexList = compositeDatabaseFieldTypes.stream().
                 map(IncomingDatabaseFieldType::getFieldName).collect(Collectors.toList());
 
-            return "CREATE UNIQUE INDEX " + p + " ON " + this.tableName + "(" + String.join(",", finalUniqueIndexList) + ");";
-        }).collect(Collectors.joining());
+            return index(p, true, finalUniqueIndexList);
+        }).collect(Collectors.toList());
     }
 
-    private String createCompositeIndex() {
+    private List<Indexes> createCompositeIndex() {
         final Map<String, List<IncomingDatabaseFieldType>> collect = this.databaseField.
             stream().
             filter(i -> i.getDatabaseField() != null && !i.getDatabaseField().indexName().isEmpty()).
@@ -100,24 +121,31 @@ public class Table {
             final List<String> finalList = incomingDatabaseFieldTypes.stream().
                 map(IncomingDatabaseFieldType::getFieldName).collect(Collectors.toList());
 
-            return "CREATE INDEX " + k + " ON " + this.tableName + "(" + String.join(",", finalList) + ");";
-        }).collect(Collectors.joining());
+            return index(k, false, finalList);
+        }).collect(Collectors.toList());
     }
 
-    private String createUniqueIndex() {
+    private List<Indexes> createUniqueIndex() {
         return this.databaseField.stream().
             filter(i -> i.getDatabaseField() != null).
             filter(i -> i.getDatabaseField().unique()).
-            map(i -> "CREATE UNIQUE INDEX " + i.getFieldName() + "_idx ON " + this.tableName + "(" + i.getFieldName() + ");").
-            collect(Collectors.joining());
+            map(i -> index(i.getFieldName() + "_idx", true, List.of(i.getFieldName()))).
+            collect(Collectors.toList());
     }
 
-    private String createIndexWithOneField() {
+    private List<Indexes> createIndexWithOneField() {
         return this.databaseField.stream().
             filter(i -> i.getDatabaseField() != null).
             filter(i -> i.getDatabaseField().index()).
-            map(i -> "CREATE INDEX " + i.getFieldName() + "_idx ON " + this.tableName + "(" + i.getFieldName() + ");").
-            collect(Collectors.joining());
+            map(i -> index(i.getFieldName() + "_idx", false, List.of(i.getFieldName()))).
+            collect(Collectors.toList());
+    }
+
+    private static Indexes index(final String name, final boolean unique, final List<String> columns) {
+        final Indexes index = new Indexes(name);
+        index.setUnique(unique);
+        index.getColumns().addAll(columns);
+        return index;
     }
 
     public Database getDatabase() {
@@ -0,0 +1,101 @@
+package dev.snowz.ormlitemigrator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes needed to bring one table in line with its model: the typed operations found by the diff and the
+ * statements they render to, in execution order.
+ */
+public class TableMigration {
+
+    private final String tableName;
+    private final List<MigrationOperation> operations;
+    private final List<MigrationStatement> statements;
+    private final List<ColumnBackfill> backfills;
+    private List<Indexes> existingIndexes = new ArrayList<>();
+    private TableStatistics statistics = TableStatistics.UNKNOWN;
+
+    public TableMigration(final String tableName) {
+        this.tableName = tableName;
+        this.operations = new ArrayList<>();
+        this.statements = new ArrayList<>();
+        this.backfills = new ArrayList<>();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<MigrationOperation> getOperations() {
+        return operations;
+    }
+
+    public List<MigrationStatement> getStatements() {
+        return statements;
+    }
+
+    public TableMigration add(final String sql) {
+        statements.add(new MigrationStatement(sql));
+        return this;
+    }
+
+    /**
+     * Columns added as nullable by the statements that are filled and tightened to NOT NULL afterwards.
+     */
+    public List<ColumnBackfill> getBackfills() {
+        return backfills;
+    }
+
+    /**
+     * The size of the table before the migration, {@link TableStatistics#UNKNOWN} unless cost estimation is enabled.
+     */
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The estimated cost of all operations on this table.
+     */
+    public OperationCost getCost() {
+        OperationCost cost = OperationCost.FREE;
+        for (final MigrationOperation operation : operations) {
+            cost = cost.plus(operation.getCost());
+        }
+        return cost;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty() && statements.isEmpty() && backfills.isEmpty();
+    }
+
+    /**
+     * True when the statements must run in one transaction even if the plan is not applied transactionally, as
+     * a table rebuild would otherwise leave the table half swapped.
+     */
+    boolean isAtomic() {
+        return operations.stream().anyMatch(o -> o instanceof RebuildTable);
+    }
+
+    List<Indexes> getExistingIndexes() {
+        return existingIndexes;
+    }
+
+    void setExistingIndexes(final List<Indexes> existingIndexes) {
+        this.existingIndexes = existingIndexes;
+    }
+
+    void setStatistics(final TableStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "TableMigration{" +
+            "tableName='" + tableName + '\'' +
+            ", operations=" + operations +
+            ", statements=" + statements +
+            ", backfills=" + backfills +
+            '}';
+    }
+}
@@ -0,0 +1,52 @@
+package dev.snowz.ormlitemigrator;
+
+/**
+ * Approximate size of a table as reported by the database catalog. Counts are -1 when the database does not
+ * expose them cheaply.
+ */
+public class TableStatistics {
+
+    public static final TableStatistics UNKNOWN = new TableStatistics(-1, -1);
+    public static final TableStatistics EMPTY = new TableStatistics(0, 0, 0);
+
+    private final long rows;
+    private final long bytes;
+    private final long indexBytes;
+
+    public TableStatistics(final long rows, final long bytes) {
+        this(rows, bytes, -1);
+    }
+
+    public TableStatistics(final long rows, final long bytes, final long indexBytes) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.indexBytes = indexBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * The size of the table including its indexes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * The part of {@link #getBytes()} taken by the indexes.
+     */
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "TableStatistics{" +
+            "rows=" + rows +
+            ", bytes=" + bytes +
+            ", indexBytes=" + indexBytes +
+            '}';
+    }
+}
@@ -0,0 +1,290 @@
+package dev.snowz.ormlitemigrator;
+
+import dev.snowz.ormlitemigrator.exception.ConnectionStringException;
+import dev.snowz.ormlitemigrator.exception.NoFieldDefinedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Migrates many databases, or many schemas of one database, to the same models: e.g. one SQLite file or one
+ * PostgreSQL schema per tenant. The models are compiled once and shared by every tenant, and up to
+ * {@link #concurrency(int)} tenants are migrated at a time, each on a connection of its own.
+ */
+public class TenantMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(TenantMigrator.class.getSimpleName());
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(10);
+
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+    private final List<Class<?>> models = new ArrayList<>();
+    private final List<CompiledModel> compiled = new ArrayList<>();
+    private DataSource schemaDataSource;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private Duration timeout = DEFAULT_TIMEOUT;
+    private Consumer<SchemaInterpreter> configuration = interpreter -> {
+    };
+
+    /**
+     * Adds a tenant per connection string, each opened with {@link DatabaseConnectionManager#withConnection} when
+     * its turn comes and closed afterwards.
+     */
+    public TenantMigrator connectionStrings(final Collection<String> connectionStrings) {
+        for (final String connectionString : connectionStrings) {
+            this.tenants.put(connectionString, new Tenant() {
+                @Override
+                public Database open(final Database.Type schemaType) throws ConnectionStringException, ClassNotFoundException, SQLException {
+                    return DatabaseConnectionManager.withConnection(connectionString);
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * Adds a tenant per schema of the database behind the data source. Each tenant borrows a connection, switches
+     * it to its schema and switches it back before returning it.
+     */
+    public TenantMigrator schemas(final DataSource dataSource, final Collection<String> schemas) {
+        if (this.schemaDataSource != null && this.schemaDataSource != dataSource) {
+            throw new IllegalStateException("schemas of one data source only");
+        }
+        this.schemaDataSource = dataSource;
+        for (final String schema : schemas) {
+            this.tenants.put(schema, new Tenant() {
+                private String previous;
+
+                @Override
+                public Database open(final Database.Type schemaType) throws SQLException {
+                    final Connection connection = dataSource.getConnection();
+                    try {
+                        this.previous = connection.getSchema();
+                        connection.setSchema(schema);
+                    } catch (final SQLException e) {
+                        connection.close();
+                        throw e;
+                    }
+                    return new Database(schemaType, null, connection, null);
+                }
+
+                @Override
+                public DataSource dataSource() {
+                    return dataSource;
+                }
+
+                @Override
+                public void close(final Database database) throws SQLException {
+                    try {
+                        if (this.previous != null && !database.getConnection().isClosed()) {
+                            database.getConnection().setSchema(this.previous);
+                        }
+                    } finally {
+                        database.close();
+                    }
+                }
+            });
+        }
+        return this;
+    }
+
+    public <T> TenantMigrator model(final Class<T> databaseClass) {
+        this.models.add(databaseClass);
+        return this;
+    }
+
+    public TenantMigrator model(final CompiledModel model) {
+        this.compiled.add(model);
+        return this;
+    }
+
+    public TenantMigrator concurrency(final int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * How long a tenant may take, counted from before its connection is opened. A tenant still connecting after that
+     * is interrupted, one still migrating has its connection aborted, and either is reported as failed with a
+     * {@link TimeoutException}.
+     */
+    public TenantMigrator timeout(final Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Configures the interpreter of every tenant, e.g. {@code i -> i.fingerprint(true).transactional(true)}. A tenant
+     * whose interpreter is configured with {@link SchemaInterpreter#parallel(DataSource, int) parallel(...)} fails:
+     * tenants already run concurrently, and connections borrowed from a data source are not the tenant's.
+     */
+    public TenantMigrator configure(final Consumer<SchemaInterpreter> configuration) {
+        this.configuration = configuration;
+        return this;
+    }
+
+    /**
+     * Migrates every tenant. A tenant that fails does not stop the others, it is reported in the returned report.
+     */
+    public TenantReport migrate() throws ConnectionStringException, SQLException, NoFieldDefinedException, TableAnnotationNotFound {
+        final List<CompiledModel> tables = new ArrayList<>();
+        for (final Class<?> model : this.models) {
+            tables.add(ModelRegistry.get(model));
+        }
+        tables.addAll(this.compiled);
+        final Database.Type schemaType = this.schemaDataSource != null ? DatabaseConnectionManager.withDataSource(this.schemaDataSource).getType() : null;
+
+        final TenantReport report = new TenantReport();
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.concurrency, this.tenants.size())), daemon("ormlite-migrator-tenant"));
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(daemon("ormlite-migrator-tenant-timeout"));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final Map.Entry<String, Tenant> tenant : this.tenants.entrySet()) {
+                futures.add(executor.submit(() -> this.migrate(tenant.getKey(), tenant.getValue(), schemaType, tables, watchdog, report)));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            // migrate(...) reports the failures of its tenant itself
+            throw new IllegalStateException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while migrating tenants", e);
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+
+        report.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        logger.info("migrated {} tenants in {} ms - {}", this.tenants.size(), report.getElapsed().toMillis(), report);
+        return report;
+    }
+
+    private void migrate(final String name, final Tenant tenant, final Database.Type schemaType, final List<CompiledModel> tables, final ScheduledExecutorService watchdog, final TenantReport report) {
+        final long start = System.nanoTime();
+        final Object guard = new Object();
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+        final AtomicReference<Database> opened = new AtomicReference<>();
+        final Thread worker = Thread.currentThread();
+        // the deadline covers connecting too: a tenant that cannot be reached must not hold a worker forever. Under the
+        // guard, the watchdog interrupts the worker only while it connects and aborts the connection only until the
+        // tenant is done with it, even when it fires while being cancelled
+        final ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+            synchronized (guard) {
+                if (finished.get()) {
+                    return;
+                }
+                timedOut.set(true);
+                final Database database = opened.get();
+                if (database != null) {
+                    abort(name, database);
+                } else {
+                    logger.warn("tenant {} timed out while connecting, interrupting it", name);
+                    worker.interrupt();
+                }
+            }
+        }, this.timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            final Database database = tenant.open(schemaType);
+            synchronized (guard) {
+                opened.set(database);
+            }
+            try {
+                if (timedOut.get()) {
+                    throw new SQLException("connected after the deadline");
+                }
+                final SchemaInterpreter interpreter = new SchemaInterpreter(database);
+                tables.forEach(interpreter::model);
+                this.configuration.accept(interpreter);
+                if (interpreter.isParallel()) {
+                    throw new IllegalStateException("tenants are migrated concurrently already, parallel(...) would borrow connections that are not switched to the tenant");
+                }
+                interpreter.lockTenant(name, tenant.dataSource());
+                final MigrationResult result = interpreter.migrate();
+                report.finished(name, result, Duration.ofNanos(System.nanoTime() - start));
+            } finally {
+                finish(guard, finished, deadline);
+                tenant.close(database);
+            }
+        } catch (final Exception | NoFieldDefinedException | TableAnnotationNotFound | ConnectionStringException e) {
+            final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            if (timedOut.get()) {
+                final TimeoutException timeout = new TimeoutException(name + " timed out after " + this.timeout);
+                timeout.initCause(e);
+                report.failed(name, timeout, elapsed);
+            } else {
+                report.failed(name, e, elapsed);
+            }
+            logger.error("could not migrate tenant {} - {}", name, e.getMessage());
+        } finally {
+            finish(guard, finished, deadline);
+            // the worker is pooled, an interrupt while connecting must not leak into the next tenant; none can follow
+            Thread.interrupted();
+        }
+    }
+
+    private static void finish(final Object guard, final AtomicBoolean finished, final ScheduledFuture<?> deadline) {
+        synchronized (guard) {
+            finished.set(true);
+        }
+        deadline.cancel(false);
+    }
+
+    /**
+     * Aborts the tenant's connection, which fails the statement it is running.
+     */
+    private static void abort(final String name, final Database database) {
+        logger.warn("tenant {} timed out, aborting its connection", name);
+        try {
+            database.getConnection().abort(Runnable::run);
+        } catch (final SQLException e) {
+            try {
+                database.getConnection().close();
+            } catch (final SQLException closeFailure) {
+                logger.warn("could not abort the connection of tenant {} - {}", name, closeFailure.getMessage());
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return r -> {
+            final Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private interface Tenant {
+        Database open(Database.Type schemaType) throws ConnectionStringException, ClassNotFoundException, SQLException;
+
+        default void close(final Database database) throws SQLException {
+            database.close();
+        }
+
+        /**
+         * The data source the tenant's connection comes from, which renews a table lock on a connection of its own.
+         */
+        default DataSource dataSource() {
+            return null;
+        }
+    }
+}
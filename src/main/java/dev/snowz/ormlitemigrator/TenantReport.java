@@ -0,0 +1,108 @@
+package dev.snowz.ormlitemigrator;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a {@link TenantMigrator} run: per tenant whether it was migrated, already up to date, skipped or failed,
+ * in the order the tenants finished.
+ */
+public class TenantReport {
+
+    public enum Outcome {
+        /**
+         * Statements were applied and none failed.
+         */
+        MIGRATED,
+        /**
+         * Nothing to apply, or the schema fingerprint matched.
+         */
+        UNCHANGED,
+        /**
+         * Another node held the migration lock, see {@link SchemaInterpreter#lock(Duration)}.
+         */
+        SKIPPED,
+        FAILED
+    }
+
+    private final Map<String, Outcome> outcomes = new LinkedHashMap<>();
+    private final Map<String, MigrationResult> results = new LinkedHashMap<>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+    private final Map<String, Duration> durations = new LinkedHashMap<>();
+    private Duration elapsed = Duration.ZERO;
+
+    public synchronized Map<String, Outcome> getOutcomes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(outcomes));
+    }
+
+    public synchronized List<String> getTenants(final Outcome outcome) {
+        return outcomes.entrySet().stream()
+            .filter(e -> e.getValue() == outcome)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The migration result of every tenant that got as far as migrating.
+     */
+    public synchronized Map<String, MigrationResult> getResults() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(results));
+    }
+
+    /**
+     * Why each failed tenant failed: the exception that stopped it, or the first statement that failed.
+     */
+    public synchronized Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    public synchronized Map<String, Duration> getDurations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+    }
+
+    public synchronized boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    synchronized void finished(final String tenant, final MigrationResult result, final Duration duration) {
+        results.put(tenant, result);
+        durations.put(tenant, duration);
+        if (result.hasFailures()) {
+            outcomes.put(tenant, Outcome.FAILED);
+            failures.put(tenant, result.getFailures().get(0).getException());
+        } else if (result.isSkipped()) {
+            outcomes.put(tenant, Outcome.SKIPPED);
+        } else if (result.isUnchanged() || result.getExecutedStatements() == 0) {
+            outcomes.put(tenant, Outcome.UNCHANGED);
+        } else {
+            outcomes.put(tenant, Outcome.MIGRATED);
+        }
+    }
+
+    synchronized void failed(final String tenant, final Throwable failure, final Duration duration) {
+        outcomes.put(tenant, Outcome.FAILED);
+        failures.put(tenant, failure);
+        durations.put(tenant, duration);
+    }
+
+    void setElapsed(final Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final Map<Outcome, Long> counts = outcomes.values().stream().collect(Collectors.groupingBy(o -> o, () -> new EnumMap<>(Outcome.class), Collectors.counting()));
+        return "TenantReport{" +
+            "migrated=" + counts.getOrDefault(Outcome.MIGRATED, 0L) +
+            ", unchanged=" + counts.getOrDefault(Outcome.UNCHANGED, 0L) +
+            ", skipped=" + counts.getOrDefault(Outcome.SKIPPED, 0L) +
+            ", failed=" + counts.getOrDefault(Outcome.FAILED, 0L) +
+            ", elapsed=" + elapsed +
+            '}';
+    }
+}
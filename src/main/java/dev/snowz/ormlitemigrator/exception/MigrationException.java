@@ -0,0 +1,18 @@
+package dev.snowz.ormlitemigrator.exception;
+
+import java.sql.SQLException;
+
+/**
+ * Carries a {@link SQLException} out of the lazily planned statement stream, where checked exceptions cannot be thrown.
+ */
+public class MigrationException extends RuntimeException {
+
+    public MigrationException(final SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,183 @@
+package dev.snowz.ormlitemigrator;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AlterTableTest {
+
+    private static Indexes index(final String name, final String... columns) {
+        final Indexes index = new Indexes(name);
+        index.setUnique(false);
+        index.getColumns().addAll(List.of(columns));
+        return index;
+    }
+
+    @Test
+    public void testMySqlAddsColumnsInstantThenInPlaceThenDefault() {
+        final List<MigrationStatement> statements = new AlterTable(Database.Type.MySQL, "items", true)
+            .addColumn("note VARCHAR(255)")
+            .statements();
+        assertEquals(1, statements.size());
+
+        final MigrationStatement instant = statements.get(0);
+        assertEquals(AlterTable.INSTANT, instant.getStrategy());
+        assertEquals("ALTER TABLE items ADD COLUMN note VARCHAR(255), ALGORITHM=INSTANT", instant.getSql());
+
+        final MigrationStatement inplace = instant.getFallback();
+        assertEquals(AlterTable.INPLACE, inplace.getStrategy());
+        assertEquals("ALTER TABLE items ADD COLUMN note VARCHAR(255), ALGORITHM=INPLACE, LOCK=NONE", inplace.getSql());
+
+        final MigrationStatement plain = inplace.getFallback();
+        assertEquals(AlterTable.DEFAULT, plain.getStrategy());
+        assertEquals("ALTER TABLE items ADD COLUMN note VARCHAR(255)", plain.getSql());
+        assertNull(plain.getFallback());
+
+        for (MigrationStatement tried = instant; tried != null; tried = tried.getFallback()) {
+            assertFalse(tried.isNonTransactional());
+        }
+    }
+
+    @Test
+    public void testMySqlBuildsIndexesInPlaceAtBest() {
+        final MigrationStatement statement = new AlterTable(Database.Type.MariaDB, "items", true)
+            .addColumn("note VARCHAR(255)")
+            .addIndex(index("items_note_idx", "note"))
+            .statements().get(0);
+        assertEquals(AlterTable.INPLACE, statement.getStrategy());
+        assertEquals(AlterTable.DEFAULT, statement.getFallback().getStrategy());
+
+        // offline, one plain statement without fallbacks
+        final MigrationStatement offline = new AlterTable(Database.Type.MySQL, "items", false)
+            .addColumn("note VARCHAR(255)")
+            .statements().get(0);
+        assertNull(offline.getStrategy());
+        assertNull(offline.getFallback());
+    }
+
+    @Test
+    public void testPostgresBuildsAndDropsIndexesConcurrently() {
+        final List<MigrationStatement> statements = new AlterTable(Database.Type.Postgres, "items", true)
+            .addColumn("note VARCHAR(255)")
+            .dropIndex("items_old_idx")
+            .addIndex(index("items_note_idx", "note"))
+            .statements();
+        assertEquals(3, statements.size());
+
+        assertEquals("ALTER TABLE items ADD COLUMN note VARCHAR(255)", statements.get(0).getSql());
+        assertFalse(statements.get(0).isNonTransactional());
+
+        assertEquals("DROP INDEX CONCURRENTLY items_old_idx", statements.get(1).getSql());
+        assertEquals("CREATE INDEX CONCURRENTLY items_note_idx ON items(note)", statements.get(2).getSql());
+        for (final MigrationStatement statement : statements.subList(1, 3)) {
+            assertEquals(AlterTable.CONCURRENTLY, statement.getStrategy());
+            assertTrue(statement.isNonTransactional());
+            assertNull(statement.getFallback());
+        }
+
+        for (final MigrationStatement statement : new AlterTable(Database.Type.Postgres, "items", false).addIndex(index("items_note_idx", "note")).statements()) {
+            assertFalse(statement.getSql().contains("CONCURRENTLY"));
+            assertFalse(statement.isNonTransactional());
+        }
+    }
+
+    @Test
+    public void testMySqlFallsBackUntilAStrategyIsAccepted() throws Throwable {
+        final String plain = "ALTER TABLE items ADD COLUMN note VARCHAR(255)";
+        // a server without instant ADD COLUMN, and one that cannot add it in place either
+        assertEquals(Map.of(plain + ", " + AlterTable.INPLACE, AlterTable.INPLACE), applyOnline("test_online_inplace", AlterTable.INSTANT));
+        assertEquals(Map.of(plain, AlterTable.DEFAULT), applyOnline("test_online_default", AlterTable.INSTANT, AlterTable.INPLACE));
+    }
+
+    private static Map<String, String> applyOnline(final String databaseName, final String... rejected) throws Throwable {
+        try (final Connection target = DriverManager.getConnection("jdbc:h2:mem:" + databaseName + ";MODE=MySQL")) {
+            try (final Statement stmt = target.createStatement()) {
+                stmt.execute("CREATE TABLE items (id INT PRIMARY KEY)");
+            }
+            final Connection connection = rewriting(target, sql -> {
+                for (final String strategy : rejected) {
+                    if (sql.endsWith(", " + strategy)) {
+                        throw new SQLSyntaxErrorException(strategy + " is not supported for this operation");
+                    }
+                }
+                // H2 knows no ALGORITHM clause
+                return sql.replaceAll(", ALGORITHM=.*$", "");
+            });
+
+            final TableMigration table = new TableMigration("items");
+            table.getStatements().addAll(new AlterTable(Database.Type.MySQL, "items", true).addColumn("note VARCHAR(255)").statements());
+            final MigrationResult result = new MigrationExecutor(Database.Type.MySQL, connection, 10).apply(List.of(table));
+
+            assertFalse(result.hasFailures());
+            return result.getAppliedStrategies();
+        }
+    }
+
+    @Test
+    public void testConcurrentStatementsNeverRunInATransaction() throws Throwable {
+        try (final Connection target = DriverManager.getConnection("jdbc:h2:mem:test_online_concurrently;MODE=PostgreSQL")) {
+            try (final Statement stmt = target.createStatement()) {
+                stmt.execute("CREATE TABLE items (id INT PRIMARY KEY)");
+                stmt.execute("CREATE INDEX items_old_idx ON items(id)");
+            }
+
+            final List<String> inTransaction = new ArrayList<>();
+            final List<String> alone = new ArrayList<>();
+            final Connection connection = rewriting(target, sql -> {
+                (target.getAutoCommit() ? alone : inTransaction).add(sql);
+                // H2 does not know CONCURRENTLY
+                return sql.replace(" CONCURRENTLY", "");
+            });
+
+            final TableMigration table = new TableMigration("items");
+            table.getStatements().addAll(new AlterTable(Database.Type.Postgres, "items", true)
+                .addColumn("note VARCHAR(255)")
+                .dropIndex("items_old_idx")
+                .addIndex(index("items_note_idx", "note"))
+                .statements());
+            final MigrationResult result = new MigrationExecutor(Database.Type.Postgres, connection, 10).applyTransactionally(List.of(table));
+
+            assertFalse(result.hasFailures());
+            assertEquals(List.of("ALTER TABLE items ADD COLUMN note VARCHAR(255)"), inTransaction);
+            assertEquals(List.of("DROP INDEX CONCURRENTLY items_old_idx", "CREATE INDEX CONCURRENTLY items_note_idx ON items(note)"), alone);
+        }
+    }
+
+    private interface SqlRewrite {
+        String apply(String sql) throws SQLException;
+    }
+
+    /**
+     * Wraps the connection so the SQL of every executed or batched statement goes through {@code rewrite} first.
+     */
+    private static Connection rewriting(final Connection target, final SqlRewrite rewrite) {
+        return (Connection) Proxy.newProxyInstance(AlterTableTest.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            try {
+                final Object value = method.invoke(target, args);
+                if (!method.getName().equals("createStatement")) {
+                    return value;
+                }
+                return Proxy.newProxyInstance(AlterTableTest.class.getClassLoader(), new Class[]{Statement.class}, (p, m, a) -> {
+                    Object[] forwarded = a;
+                    if ((m.getName().equals("execute") || m.getName().equals("addBatch")) && a != null && a.length == 1 && a[0] instanceof String) {
+                        forwarded = new Object[]{rewrite.apply((String) a[0])};
+                    }
+                    try {
+                        return m.invoke(value, forwarded);
+                    } catch (final InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
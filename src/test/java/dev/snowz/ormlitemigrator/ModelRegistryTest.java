@@ -0,0 +1,85 @@
+package dev.snowz.ormlitemigrator;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import dev.snowz.ormlitemigrator.exception.NoFieldDefinedException;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    @DatabaseTable(tableName = "registry_users")
+    public static class User {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private String name;
+    }
+
+    public static class NotATable {
+        @DatabaseField
+        private String name;
+    }
+
+    @DatabaseTable(tableName = "registry_empty")
+    public static class NoFields {
+        private String name;
+    }
+
+    @DatabaseTable(tableName = "registry_registered")
+    public static class Registered {
+        @DatabaseField(generatedId = true)
+        private int id;
+    }
+
+    @Test
+    public void testCompilesEachModelOnce() throws Throwable {
+        final CompiledModel model = ModelRegistry.get(User.class);
+        assertSame(model, ModelRegistry.get(User.class));
+        assertEquals("registry_users", model.getTableName());
+        assertEquals(1, model.getIndexStatements().size());
+    }
+
+    @Test
+    public void testThrowsAFreshExceptionForEveryFailedLookup() throws Throwable {
+        final TableAnnotationNotFound first = missingAnnotation();
+        final TableAnnotationNotFound second = missingAnnotation();
+        assertNotSame(first, second);
+
+        NoFieldDefinedException noFields = null;
+        try {
+            ModelRegistry.get(NoFields.class);
+        } catch (final NoFieldDefinedException e) {
+            noFields = e;
+        }
+        assertNotNull(noFields);
+        try {
+            ModelRegistry.get(NoFields.class);
+            fail("the failure is cached");
+        } catch (final NoFieldDefinedException e) {
+            assertNotSame(noFields, e);
+        }
+    }
+
+    @Test
+    public void testPrefersRegisteredModels() throws Throwable {
+        final CompiledModel registered = new CompiledModel(Registered.class, "registry_registered", List.of(), Map.of(), List.of());
+        ModelRegistry.register(registered);
+        assertSame(registered, ModelRegistry.get(Registered.class));
+    }
+
+    private static TableAnnotationNotFound missingAnnotation() throws NoFieldDefinedException {
+        try {
+            ModelRegistry.get(NotATable.class);
+        } catch (final TableAnnotationNotFound e) {
+            return e;
+        }
+        fail("NotATable has no @DatabaseTable");
+        return null;
+    }
+}
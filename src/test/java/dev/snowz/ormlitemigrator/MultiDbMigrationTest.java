@@ -1,13 +1,34 @@
 package dev.snowz.ormlitemigrator;
 
+import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MultiDbMigrationTest {
 
@@ -32,6 +53,123 @@ public class MultiDbMigrationTest {
         private String email;
     }
 
+    @DatabaseTable(tableName = "test_users")
+    public static class UserV3 {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String name;
+
+        @DatabaseField
+        private String email;
+
+        @DatabaseField
+        private String phone;
+
+        @DatabaseField
+        private Integer age;
+    }
+
+    @DatabaseTable(tableName = "test_users")
+    public static class IndexedUser {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private String name;
+    }
+
+    @DatabaseTable(tableName = "test_users")
+    public static class UserWithStatus {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String name;
+
+        @DatabaseField(canBeNull = false, defaultValue = "active")
+        private String status;
+    }
+
+    @DatabaseTable(tableName = "test_tasks")
+    public static class Task {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String title;
+
+        @DatabaseField
+        private String owner;
+    }
+
+    @DatabaseTable(tableName = "test_tasks")
+    public static class IndexedTask {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true, indexName = "title_owner_idx")
+        private String title;
+
+        @DatabaseField(indexName = "title_owner_idx")
+        private String owner;
+    }
+
+    @DatabaseTable(tableName = "test_projects")
+    public static class Project {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private String title;
+    }
+
+    @DatabaseTable(tableName = "test_authors")
+    public static class Author {
+        @DatabaseField(generatedId = true)
+        private int id;
+    }
+
+    @DatabaseTable(tableName = "test_books")
+    public static class Book {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(foreign = true)
+        private Author author;
+    }
+
+    @DatabaseTable(tableName = "test_reviews")
+    public static class Review {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(foreign = true)
+        private Book book;
+
+        @DatabaseField(foreign = true)
+        private Author reviewer;
+    }
+
+    @DatabaseTable(tableName = "test_notes")
+    public static class Note {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String body;
+    }
+
+    @DatabaseTable(tableName = "test_notes")
+    public static class StrictNote {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(canBeNull = false, dataType = DataType.LONG_STRING)
+        private String body;
+    }
+
     @Test
     public void testH2Migration() throws Throwable {
         final String connectionString = "jdbc:h2:mem:test_h2;DB_CLOSE_DELAY=-1";
@@ -78,6 +216,691 @@ public class MultiDbMigrationTest {
         runMigrationTest(database, connection, "test_users");
     }
 
+    @Test
+    public void testH2AddsSeveralColumnsInOneStatement() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_alter;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).migrate();
+
+        final SchemaInterpreter schemaInterpreter = new SchemaInterpreter(database).model(UserV3.class);
+        final String script = schemaInterpreter.generate();
+        assertEquals(1, script.split(";").length - 1);
+
+        assertFalse(schemaInterpreter.migrate().hasFailures());
+        assertTrue(columnExists(connection, "TEST_USERS", "EMAIL"));
+        assertTrue(columnExists(connection, "TEST_USERS", "PHONE"));
+        assertTrue(columnExists(connection, "TEST_USERS", "AGE"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2AddsMissingIndexToExistingTable() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_index;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).migrate();
+
+        final String script = new SchemaInterpreter(database).model(IndexedUser.class).generate();
+        assertTrue(script.contains("CREATE INDEX"));
+
+        assertFalse(new SchemaInterpreter(database).model(IndexedUser.class).migrate().hasFailures());
+        assertTrue(new SchemaInterpreter(database).model(IndexedUser.class).generate().isEmpty());
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2BackfillsNotNullColumnInChunks() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_backfill;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).migrate();
+        try (final Statement stmt = connection.createStatement()) {
+            for (int i = 0; i < 5; i++) {
+                stmt.execute("INSERT INTO test_users (name) VALUES ('user" + i + "')");
+            }
+        }
+
+        final MigrationResult result = new SchemaInterpreter(database).backfill(2, Duration.ZERO).model(UserWithStatus.class).migrate();
+        assertFalse(result.hasFailures());
+        assertEquals(Long.valueOf(5), result.getBackfilledRows().get("test_users.status"));
+
+        try (final Statement stmt = connection.createStatement()) {
+            try (final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_users WHERE status = 'active'")) {
+                assertTrue(rs.next());
+                assertEquals(5, rs.getInt(1));
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT is_nullable FROM information_schema.columns WHERE UPPER(table_name) = 'TEST_USERS' AND UPPER(column_name) = 'STATUS'")) {
+                assertTrue(rs.next());
+                assertEquals("NO", rs.getString(1));
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + BackfillStore.TABLE_NAME)) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2ResumesBackfillOfTextKeysAsText() throws Throwable {
+        final Connection connection = DriverManager.getConnection("jdbc:h2:mem:test_h2_backfill_text_key;DB_CLOSE_DELAY=-1");
+
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE codes (id VARCHAR(16) PRIMARY KEY, status VARCHAR(16))");
+            stmt.execute("INSERT INTO codes (id, status) VALUES ('006', 'active'), ('007', 'active')");
+            // after '007' as text, but not after 7 as a number
+            stmt.execute("INSERT INTO codes (id) VALUES ('008'), ('05'), ('7')");
+        }
+
+        final ColumnBackfill backfill = new ColumnBackfill("codes", "status", "id", "'active'",
+            new MigrationStatement("ALTER TABLE codes ALTER COLUMN status SET NOT NULL"));
+        final BackfillStore store = new BackfillStore(connection);
+        store.register(backfill);
+        store.checkpoint(backfill, "007");
+
+        final MigrationResult result = new MigrationResult();
+        new Backfiller(connection, new MigrationExecutor(Database.Type.H2, connection, 10), 2, Duration.ZERO, MigrationListener.NOOP)
+            .run(Collections.singletonList(backfill), store.pending(), result);
+        assertFalse(result.hasFailures());
+        assertEquals(Long.valueOf(3), result.getBackfilledRows().get("codes.status"));
+
+        try (final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM codes WHERE status IS NULL")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2MergesModelsOfTheSameTable() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_merge;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        final List<TableMigration> plan = new SchemaInterpreter(database).model(User.class).model(UserV2.class).plan();
+        assertEquals(1, plan.size());
+        assertEquals(2, plan.get(0).getStatements().size());
+
+        assertFalse(new SchemaInterpreter(database).model(User.class).model(UserV2.class).migrate().hasFailures());
+        assertTrue(columnExists(connection, "TEST_USERS", "EMAIL"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2SkipsRedundantIndexAndEstimatesCost() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_optimizer;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(Task.class).migrate();
+        try (final Statement stmt = connection.createStatement()) {
+            for (int i = 0; i < 3; i++) {
+                stmt.execute("INSERT INTO test_tasks (title, owner) VALUES ('task" + i + "', 'owner')");
+            }
+        }
+
+        final List<TableMigration> plan = new SchemaInterpreter(database).estimateCosts(true).model(IndexedTask.class).plan();
+        assertEquals(1, plan.size());
+
+        // title_idx is a prefix of title_owner_idx and is not built
+        final List<MigrationOperation> operations = plan.get(0).getOperations();
+        assertEquals(1, operations.size());
+        assertEquals("title_owner_idx", ((CreateIndex) operations.get(0)).getIndex().getName());
+
+        assertEquals(3, plan.get(0).getCost().getRows());
+        assertTrue(plan.get(0).getCost().blocksWrites());
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2DryRunReportsLockImpact() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_dry_run;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(Task.class).migrate();
+        try (final Statement stmt = connection.createStatement()) {
+            for (int i = 0; i < 3; i++) {
+                stmt.execute("INSERT INTO test_tasks (title, owner) VALUES ('task" + i + "', 'owner')");
+            }
+        }
+
+        // one row per second, so the index build on three rows takes three seconds
+        final DryRunReport report = new SchemaInterpreter(database).estimateCosts(1, 1).model(IndexedTask.class).dryRun();
+        assertEquals(1, report.getPlan().size());
+        assertEquals(OperationCost.Kind.IN_PLACE, report.getCost().getKind());
+        assertEquals(OperationCost.LockScope.WRITES, report.getCost().getLockScope());
+        assertEquals(Duration.ofSeconds(3), report.getCost().getEstimatedDuration());
+        assertEquals(1, report.blockingLongerThan(Duration.ofSeconds(1)).size());
+        assertTrue(report.blockingLongerThan(Duration.ofSeconds(5)).isEmpty());
+        assertTrue(report.toString().contains("test_tasks (3 rows"));
+
+        // nothing was applied
+        assertFalse(new SchemaInterpreter(database).model(IndexedTask.class).generate().isEmpty());
+
+        connection.close();
+    }
+
+    @Test
+    public void testParallelH2Migration() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_parallel;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(connectionString);
+
+        final String sequential = new SchemaInterpreter(database).model(User.class).model(Project.class).generate();
+        final String parallel = new SchemaInterpreter(database).parallel(dataSource, 4).model(User.class).model(Project.class).generate();
+        assertEquals(sequential, parallel);
+
+        new SchemaInterpreter(database).parallel(dataSource, 4).model(User.class).model(Project.class).migrate();
+
+        assertTrue(tableExists(connection, "TEST_USERS"));
+        assertTrue(tableExists(connection, "TEST_PROJECTS"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2MigratesThroughDataSource() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_datasource;DB_CLOSE_DELAY=-1";
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger borrowed = new AtomicInteger();
+
+        // counts the connections that are borrowed and not yet closed, like a pool would
+        final JdbcDataSource dataSource = new JdbcDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                final Connection connection = super.getConnection();
+                open.incrementAndGet();
+                borrowed.incrementAndGet();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        open.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (final InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+            }
+        };
+        dataSource.setURL(connectionString);
+
+        try (final Database database = DatabaseConnectionManager.withDataSource(dataSource)) {
+            assertEquals(Database.Type.H2, database.getType());
+
+            new SchemaInterpreter(database).model(User.class).migrate();
+            assertEquals("", new SchemaInterpreter(database).model(User.class).generate());
+            new SchemaInterpreter(database).parallel(2).model(UserV2.class).model(Project.class).migrate();
+        }
+
+        assertEquals(0, open.get());
+        assertTrue(borrowed.get() > 1);
+
+        try (final Connection connection = DriverManager.getConnection(connectionString)) {
+            assertTrue(columnExists(connection, "TEST_USERS", "EMAIL"));
+            assertTrue(tableExists(connection, "TEST_PROJECTS"));
+        }
+    }
+
+    @Test
+    public void testH2ReusesPreparedIntrospectionQueries() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_prepared;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final AtomicInteger prepared = new AtomicInteger();
+
+        // counts the statements prepared on the migrator's connection
+        final Connection counting = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("prepareStatement")) {
+                prepared.incrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, counting, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).model(Task.class).model(Project.class).migrate();
+
+        prepared.set(0);
+        assertEquals("", new SchemaInterpreter(database).model(User.class).model(Task.class).model(Project.class).generate());
+        // one column query for all three tables
+        assertEquals(1, prepared.get());
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2AppliesTransactionalPlansTableByTable() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_transactional_failure;DB_CLOSE_DELAY=-1";
+        try (final Connection connection = DriverManager.getConnection(connectionString)) {
+            final TableMigration teams = new TableMigration("test_teams");
+            teams.getStatements().add(new MigrationStatement("CREATE TABLE test_teams (id INT PRIMARY KEY)"));
+            final TableMigration members = new TableMigration("test_members");
+            members.getStatements().add(new MigrationStatement("CREATE TABLE test_members (id INT PRIMARY KEY)"));
+            members.getStatements().add(new MigrationStatement("CREATE INDEX test_members_name_idx ON test_members(missing)"));
+
+            // H2 commits every DDL statement, so there is no savepoint to roll the failing table back to
+            final MigrationResult result = new MigrationExecutor(Database.Type.H2, connection, 10).applyTransactionally(List.of(teams, members));
+
+            assertTrue(result.hasFailures());
+            assertEquals("test_members", result.getFailures().get(0).getTableName());
+            assertTrue(result.getRolledBackTables().isEmpty());
+            assertTrue(tableExists(connection, "TEST_TEAMS"));
+            assertTrue(tableExists(connection, "TEST_MEMBERS"));
+        }
+    }
+
+    @Test
+    public void testH2MigratesAsynchronouslyTableByTable() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_async;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).model(Project.class).migrate();
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final MigrationFuture future = new SchemaInterpreter(database)
+            .transactional(true)
+            .model(UserV2.class).model(Project.class)
+            .migrateAsync(executor);
+
+        // up to date, so done right after diffing
+        future.table("test_projects").get(10, TimeUnit.SECONDS);
+        future.table("TEST_USERS").get(10, TimeUnit.SECONDS);
+        assertTrue(columnExists(connection, "TEST_USERS", "EMAIL"));
+
+        final MigrationResult result = future.get(10, TimeUnit.SECONDS);
+        assertFalse(result.hasFailures());
+        assertTrue(future.table("test_users").isDone());
+
+        assertEquals("", new SchemaInterpreter(database).model(UserV2.class).model(Project.class).generateAsync(executor).get(10, TimeUnit.SECONDS));
+
+        executor.shutdown();
+        connection.close();
+    }
+
+    @Test
+    public void testH2CompletesEachTableBeforeTheMigrationEnds() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_async_tables;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        // holds the migration in the last table until the first one has been observed
+        final CountDownLatch release = new CountDownLatch(1);
+        final MigrationListener listener = new MigrationListener() {
+            @Override
+            public void tableApplied(final TableMigration table, final Duration elapsed) {
+                if (table.getTableName().equals("test_projects")) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final MigrationFuture future = new SchemaInterpreter(database)
+            .batchSize(1)
+            .listener(listener)
+            .model(User.class).model(Project.class)
+            .migrateAsync(executor);
+
+        future.table("test_users").get(10, TimeUnit.SECONDS);
+        assertFalse(future.table("test_projects").isDone());
+        assertFalse(future.isDone());
+        release.countDown();
+
+        assertFalse(future.get(10, TimeUnit.SECONDS).hasFailures());
+        assertTrue(future.table("test_projects").isDone());
+        try {
+            future.table("test_missing");
+            fail("no queued model maps to test_missing");
+        } catch (final IllegalArgumentException expected) {
+        }
+
+        executor.shutdown();
+        connection.close();
+    }
+
+    @Test
+    public void testH2MigratesTenantSchemas() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_tenants;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE SCHEMA TENANT_A");
+            stmt.execute("CREATE SCHEMA TENANT_B");
+        }
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(connectionString);
+
+        final TenantReport report = new TenantMigrator()
+            .schemas(dataSource, List.of("TENANT_A", "TENANT_B", "TENANT_MISSING"))
+            .model(User.class).model(Project.class)
+            .concurrency(2)
+            .timeout(Duration.ofSeconds(30))
+            .migrate();
+
+        // each schema gets its own tables, even though they share names
+        assertEquals(List.of("TENANT_A", "TENANT_B"), sorted(report.getTenants(TenantReport.Outcome.MIGRATED)));
+        assertEquals(List.of("TENANT_MISSING"), report.getTenants(TenantReport.Outcome.FAILED));
+        assertNotNull(report.getFailures().get("TENANT_MISSING"));
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.executeQuery("SELECT COUNT(*) FROM TENANT_A.TEST_USERS").close();
+            stmt.executeQuery("SELECT COUNT(*) FROM TENANT_B.TEST_PROJECTS").close();
+        }
+
+        final TenantReport again = new TenantMigrator()
+            .schemas(dataSource, List.of("TENANT_A", "TENANT_B"))
+            .model(User.class).model(Project.class)
+            .migrate();
+        assertEquals(List.of("TENANT_A", "TENANT_B"), sorted(again.getTenants(TenantReport.Outcome.UNCHANGED)));
+        assertFalse(again.hasFailures());
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2LocksTenantSchemas() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_tenants_locked;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE SCHEMA TENANT_A");
+            stmt.execute("CREATE SCHEMA TENANT_B");
+        }
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(connectionString);
+
+        // H2 locks with a row, renewed on a second connection of the data source that has to see the tenant's schema
+        final TenantReport report = new TenantMigrator()
+            .schemas(dataSource, List.of("TENANT_A", "TENANT_B"))
+            .model(User.class)
+            .concurrency(2)
+            .configure(interpreter -> interpreter.lock(Duration.ofSeconds(5)))
+            .migrate();
+
+        assertFalse(String.valueOf(report.getFailures()), report.hasFailures());
+        assertEquals(List.of("TENANT_A", "TENANT_B"), sorted(report.getTenants(TenantReport.Outcome.MIGRATED)));
+        try (final Statement stmt = connection.createStatement()) {
+            for (final String schema : List.of("TENANT_A", "TENANT_B")) {
+                try (final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + schema + "." + MigrationLock.TABLE_NAME)) {
+                    assertTrue(rs.next());
+                    assertEquals(0, rs.getInt(1));
+                }
+            }
+        }
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2TenantsRefuseParallelDiffing() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_tenants_parallel;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE SCHEMA TENANT_A");
+        }
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(connectionString);
+
+        // the borrowed connections would diff the default schema instead of the tenant's
+        final TenantReport report = new TenantMigrator()
+            .schemas(dataSource, List.of("TENANT_A"))
+            .model(User.class)
+            .configure(interpreter -> interpreter.parallel(dataSource, 2))
+            .migrate();
+
+        assertEquals(List.of("TENANT_A"), report.getTenants(TenantReport.Outcome.FAILED));
+        assertTrue(report.getFailures().get("TENANT_A") instanceof IllegalStateException);
+        assertFalse(tableExists(connection, "TEST_USERS"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2TenantTimesOutWhileConnecting() throws Throwable {
+        final AtomicInteger connections = new AtomicInteger();
+        // answers the type lookup, then hangs like an unreachable server
+        final JdbcDataSource dataSource = new JdbcDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (connections.incrementAndGet() > 1) {
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (final InterruptedException e) {
+                        throw new SQLException("interrupted while connecting", e);
+                    }
+                }
+                return super.getConnection();
+            }
+        };
+        dataSource.setURL("jdbc:h2:mem:test_h2_tenants_unreachable;DB_CLOSE_DELAY=-1");
+
+        final long start = System.nanoTime();
+        final TenantReport report = new TenantMigrator()
+            .schemas(dataSource, List.of("PUBLIC"))
+            .model(User.class)
+            .timeout(Duration.ofMillis(200))
+            .migrate();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(30)) < 0);
+        assertEquals(List.of("PUBLIC"), report.getTenants(TenantReport.Outcome.FAILED));
+        assertTrue(report.getFailures().get("PUBLIC") instanceof TimeoutException);
+    }
+
+    @Test
+    public void testH2DiffsAgainstSnapshotFileWithoutConnection() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_snapshot;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(User.class).model(IndexedTask.class).migrate();
+
+        final StringWriter file = new StringWriter();
+        new SchemaInterpreter(database).model(UserV2.class).model(IndexedTask.class).model(Project.class).introspect().write(file);
+        final String live = new SchemaInterpreter(database).model(UserV2.class).model(IndexedTask.class).model(Project.class).generate();
+        connection.close();
+
+        final SchemaSnapshot snapshot = SchemaSnapshot.read(new BufferedReader(new StringReader(file.toString())));
+        assertEquals(Database.Type.H2, snapshot.getType());
+        assertEquals(1, snapshot.getIndexes("test_tasks").stream().filter(i -> i.getName().equalsIgnoreCase("title_owner_idx")).count());
+
+        final SchemaInterpreter offline = new SchemaInterpreter(Database.offline(Database.Type.H2))
+            .snapshot(snapshot)
+            .model(UserV2.class).model(IndexedTask.class).model(Project.class);
+        assertEquals(live, offline.generate());
+        assertTrue(offline.generate().contains("test_projects"));
+
+        try {
+            offline.migrate();
+            fail("a plan diffed against a snapshot must not be applied");
+        } catch (final IllegalStateException expected) {
+            // review only
+        }
+    }
+
+    @Test
+    public void testH2LockLetsOneNodeMigrate() throws Throwable {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:test_lock_nodes;DB_CLOSE_DELAY=-1");
+        final Database database = new Database(Database.Type.H2, dataSource);
+
+        final ExecutorService nodes = Executors.newFixedThreadPool(4);
+        final List<Future<MigrationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(nodes.submit(() -> {
+                try {
+                    return new SchemaInterpreter(database).fingerprint(true).lock(Duration.ofSeconds(30)).model(User.class).model(Project.class).migrate();
+                } catch (final Throwable e) {
+                    throw new Exception(e);
+                }
+            }));
+        }
+
+        int migrated = 0;
+        for (final Future<MigrationResult> future : futures) {
+            final MigrationResult result = future.get();
+            assertFalse(result.hasFailures());
+            assertFalse(result.isSkipped());
+            if (!result.isUnchanged()) {
+                migrated++;
+            }
+        }
+        nodes.shutdown();
+
+        // the first node migrated, the others waited and found the fingerprint stored
+        assertEquals(1, migrated);
+    }
+
+    @Test
+    public void testH2LockSkipsWhileHeldAndTakesOverExpiredLease() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_lock_lease;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        try (final Connection other = DriverManager.getConnection(connectionString)) {
+            final MigrationLock held = MigrationLock.acquire(database, other, "ormlite_migrator_default", Duration.ofMinutes(1), Duration.ZERO);
+            assertNotNull(held);
+
+            assertTrue(new SchemaInterpreter(database).lock(Duration.ofMillis(200)).model(User.class).migrate().isSkipped());
+            assertFalse(tableExists(connection, "TEST_USERS"));
+
+            held.release();
+        }
+
+        // a node that crashed while holding the lock leaves an expired lease behind
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO " + MigrationLock.TABLE_NAME + " (lock_name, owner, expires_at) VALUES ('ormlite_migrator_default', 'crashed', 0)");
+        }
+
+        assertFalse(new SchemaInterpreter(database).lock(Duration.ZERO).model(User.class).migrate().isSkipped());
+        assertTrue(tableExists(connection, "TEST_USERS"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2RefusesALockNoSecondConnectionCanRenew() throws Throwable {
+        // every connection to an unnamed in-memory database opens a database of its own
+        final Connection connection = DriverManager.getConnection("jdbc:h2:mem:");
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, "jdbc:h2:mem:");
+
+        try {
+            new SchemaInterpreter(database).lock(Duration.ZERO).model(User.class).migrate();
+            fail("a lease nobody renews must not guard the migration");
+        } catch (final SQLException expected) {
+        }
+        assertFalse(tableExists(connection, "TEST_USERS"));
+        // the refused lock did not stay behind
+        try (final Statement stmt = connection.createStatement();
+             final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + MigrationLock.TABLE_NAME)) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+
+        connection.close();
+    }
+
+    @Test
+    public void testShortensLongSessionLockNames() {
+        final String scope = "ormlite_migrator_" + "tenant_".repeat(10);
+        final String first = MigrationLock.sessionName(scope + "a");
+        final String second = MigrationLock.sessionName(scope + "b");
+        assertEquals(64, first.length());
+        assertEquals(64, second.length());
+        assertFalse(first.equals(second));
+        assertEquals("ormlite_migrator_default", MigrationLock.sessionName("ormlite_migrator_default"));
+    }
+
+    @Test
+    public void testH2OrdersTablesByForeignKeysAndAppliesLevelsInParallel() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_foreign;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        final String script = new SchemaInterpreter(database).model(Review.class).model(Book.class).model(Project.class).model(Author.class).generate();
+        final int authors = script.indexOf("test_authors");
+        final int books = script.indexOf("test_books");
+        final int reviews = script.indexOf("test_reviews");
+        assertTrue(authors < books && books < reviews);
+        // unrelated tables keep their queue position relative to each other
+        assertTrue(script.indexOf("test_projects") < authors);
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(connectionString);
+
+        final MigrationResult result = new SchemaInterpreter(database)
+            .parallel(dataSource, 4)
+            .parallelApply(true)
+            .model(Review.class).model(Book.class).model(Project.class).model(Author.class)
+            .migrate();
+
+        assertFalse(result.hasFailures());
+        assertTrue(tableExists(connection, "TEST_AUTHORS"));
+        assertTrue(tableExists(connection, "TEST_BOOKS"));
+        assertTrue(tableExists(connection, "TEST_REVIEWS"));
+        assertTrue(tableExists(connection, "TEST_PROJECTS"));
+
+        connection.close();
+    }
+
+    @Test
+    public void testH2WidensColumnAndTightensNullability() throws Throwable {
+        final String connectionString = "jdbc:h2:mem:test_h2_alter_column;DB_CLOSE_DELAY=-1";
+        final Connection connection = DriverManager.getConnection(connectionString);
+        final Database database = new Database(Database.Type.H2, Database.H2Driver, connection, connectionString);
+
+        new SchemaInterpreter(database).model(Note.class).migrate();
+        try (final Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO test_notes (body) VALUES ('kept')");
+            stmt.execute("INSERT INTO test_notes (body) VALUES (NULL)");
+        }
+
+        final List<TableMigration> plan = new SchemaInterpreter(database).model(StrictNote.class).plan();
+        assertEquals(1, plan.size());
+        assertEquals(1, plan.get(0).getOperations().size());
+        final AlterColumn alterColumn = (AlterColumn) plan.get(0).getOperations().get(0);
+        assertTrue(alterColumn.isTypeChanged());
+        assertTrue(alterColumn.isTightened());
+
+        assertFalse(new SchemaInterpreter(database).model(StrictNote.class).migrate().hasFailures());
+
+        try (final Statement stmt = connection.createStatement()) {
+            try (final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_notes WHERE body = ''")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT is_nullable FROM information_schema.columns WHERE UPPER(table_name) = 'TEST_NOTES' AND UPPER(column_name) = 'BODY'")) {
+                assertTrue(rs.next());
+                assertEquals("NO", rs.getString(1));
+            }
+        }
+        assertTrue(new SchemaInterpreter(database).model(StrictNote.class).generate().isEmpty());
+
+        connection.close();
+    }
+
     private void runMigrationTest(final Database database, final Connection connection, final String tableNameToCheck) throws Throwable {
         // 1. Initial Migration
         SchemaInterpreter schemaInterpreter = new SchemaInterpreter(database);
@@ -98,6 +921,12 @@ public class MultiDbMigrationTest {
         connection.close();
     }
 
+    private static List<String> sorted(final List<String> tenants) {
+        final List<String> sorted = new ArrayList<>(tenants);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
     private boolean tableExists(final Connection conn, final String tableName) throws SQLException {
         try (final Statement stmt = conn.createStatement();
              final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM information_schema.tables WHERE UPPER(table_name) = '" + tableName.toUpperCase() + "'")) {
@@ -1,5 +1,6 @@
 package dev.snowz.ormlitemigrator;
 
+import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 import dev.snowz.ormlitemigrator.exception.ConnectionStringException;
@@ -8,12 +9,25 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static dev.snowz.ormlitemigrator.DatabaseConnectionManager.withConnection;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SQLiteMigrationTest {
 
@@ -58,12 +72,39 @@ public class SQLiteMigrationTest {
         private String email;
     }
 
+    @DatabaseTable(tableName = "users")
+    public static class IndexedUser {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private String name;
+
+        @DatabaseField(uniqueIndexName = "users_contact_idx")
+        private String email;
+
+        @DatabaseField(uniqueIndexName = "users_contact_idx")
+        private String phone;
+    }
+
+    @DatabaseTable(tableName = "users")
+    public static class StrictUser {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(canBeNull = false, index = true, dataType = DataType.LONG_STRING)
+        private String name;
+
+        @DatabaseField
+        private String email;
+    }
+
     @Test
     public void testMigration() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
         // 1. Initial Migration (Create Table)
         SchemaInterpreter schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING));
         schemaInterpreter.model(User.class);
-        schemaInterpreter.migrate();
+        assertFalse(schemaInterpreter.migrate().hasFailures());
 
         // Verify table created
         assertTrue(tableExists("users"));
@@ -73,7 +114,7 @@ public class SQLiteMigrationTest {
         // 2. Second Migration (Add Column)
         schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING));
         schemaInterpreter.model(UserV2.class);
-        schemaInterpreter.migrate();
+        assertFalse(schemaInterpreter.migrate().hasFailures());
 
         // Verify column added
         assertTrue(tableExists("users"));
@@ -81,6 +122,326 @@ public class SQLiteMigrationTest {
         assertTrue(columnExists("users", "email"));
     }
 
+    @Test
+    public void testBulkIntrospectionMigration() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
+        SchemaInterpreter schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING)).bulkIntrospection(true);
+        schemaInterpreter.model(User.class);
+        schemaInterpreter.migrate();
+
+        assertTrue(tableExists("users"));
+        assertFalse(columnExists("users", "email"));
+
+        schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING)).bulkIntrospection(true);
+        schemaInterpreter.model(UserV2.class);
+        schemaInterpreter.migrate();
+
+        assertTrue(columnExists("users", "email"));
+
+        // nothing left to do once the snapshot matches the models
+        schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING)).bulkIntrospection(true);
+        schemaInterpreter.model(UserV2.class);
+        assertTrue(schemaInterpreter.generate().isEmpty());
+    }
+
+    @Test
+    public void testIndexesAreIntrospectedInBothModes() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
+        final Database database = withConnection(CONNECTION_STRING);
+        new SchemaInterpreter(database).model(User.class).migrate();
+
+        assertTrue(new SchemaInterpreter(database).bulkIntrospection(true).model(IndexedUser.class).generate().contains("CREATE UNIQUE INDEX users_contact_idx"));
+        assertFalse(new SchemaInterpreter(database).model(IndexedUser.class).migrate().hasFailures());
+
+        assertTrue(new SchemaInterpreter(database).model(IndexedUser.class).generate().isEmpty());
+        assertTrue(new SchemaInterpreter(database).bulkIntrospection(true).model(IndexedUser.class).generate().isEmpty());
+    }
+
+    @Test
+    public void testStreamedScriptMatchesGenerate() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        new SchemaInterpreter(database).model(User.class).migrate();
+
+        final String script = new SchemaInterpreter(database).model(IndexedUser.class).generate();
+
+        final File file = File.createTempFile("migration", ".sql");
+        try {
+            new SchemaInterpreter(database).model(IndexedUser.class).generate(file.toPath());
+            assertEquals(script, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            file.delete();
+        }
+
+        final List<MigrationStatement> statements = new SchemaInterpreter(database).model(IndexedUser.class).statements().collect(Collectors.toList());
+        assertEquals(script.split("\n").length, statements.size());
+        assertTrue(statements.stream().allMatch(s -> script.contains(s.getSql() + ";\n")));
+    }
+
+    @Test
+    public void testTransactionalMigration() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
+        SchemaInterpreter schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING)).transactional(true);
+        schemaInterpreter.model(User.class);
+        MigrationResult result = schemaInterpreter.migrate();
+
+        assertFalse(result.hasFailures());
+        assertTrue(result.getRolledBackTables().isEmpty());
+        assertTrue(tableExists("users"));
+
+        schemaInterpreter = new SchemaInterpreter(withConnection(CONNECTION_STRING)).transactional(true);
+        schemaInterpreter.model(UserV2.class);
+        result = schemaInterpreter.migrate();
+
+        assertFalse(result.hasFailures());
+        assertTrue(columnExists("users", "email"));
+    }
+
+    @Test
+    public void testTransactionalMigrationRollsBackTheFailingTable() throws Throwable {
+        try (final Connection connection = DriverManager.getConnection(CONNECTION_STRING)) {
+            final TableMigration teams = new TableMigration("teams");
+            teams.getStatements().add(new MigrationStatement("CREATE TABLE teams (id INTEGER PRIMARY KEY)"));
+            final TableMigration users = new TableMigration("users");
+            users.getStatements().add(new MigrationStatement("CREATE TABLE users (id INTEGER PRIMARY KEY)"));
+            users.getStatements().add(new MigrationStatement("ALTER TABLE users ADD COLUMN name VARCHAR(255)"));
+            users.getStatements().add(new MigrationStatement("CREATE INDEX users_name_idx ON users(missing)"));
+
+            final MigrationResult result = new MigrationExecutor(Database.Type.SqlLite, connection, 10).applyTransactionally(List.of(teams, users));
+
+            assertTrue(result.hasFailures());
+            assertEquals("users", result.getFailures().get(0).getTableName());
+            assertEquals(List.of("users"), result.getRolledBackTables());
+            assertTrue(connection.getAutoCommit());
+        }
+
+        // the statements of users that ran before the failing one are gone with it, teams is committed
+        assertTrue(tableExists("teams"));
+        assertFalse(tableExists("users"));
+    }
+
+    @Test
+    public void testFingerprintSkipsUnchangedSchema() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
+        final Database database = withConnection(CONNECTION_STRING);
+
+        assertFalse(new SchemaInterpreter(database).fingerprint(true).model(User.class).migrate().isUnchanged());
+        assertTrue(new SchemaInterpreter(database).fingerprint(true).model(User.class).migrate().isUnchanged());
+        assertFalse(new SchemaInterpreter(database).fingerprint(true).forceVerify(true).model(User.class).migrate().isUnchanged());
+
+        // a changed model no longer matches the stored fingerprint
+        assertFalse(new SchemaInterpreter(database).fingerprint(true).model(UserV2.class).migrate().isUnchanged());
+        assertTrue(columnExists("users", "email"));
+        assertTrue(new SchemaInterpreter(database).fingerprint(true).model(UserV2.class).migrate().isUnchanged());
+    }
+
+    @Test
+    public void testListenerReceivesPhasesAndStatements() throws SQLException, ConnectionStringException, ClassNotFoundException, NoFieldDefinedException, TableAnnotationNotFound {
+        final List<MigrationPhase> phases = new ArrayList<>();
+        final List<String> planned = new ArrayList<>();
+        final List<String> applied = new ArrayList<>();
+        final int[] statements = new int[1];
+        final MigrationResult[] finished = new MigrationResult[1];
+
+        final MigrationListener listener = new MigrationListener() {
+            @Override
+            public void phaseFinished(final MigrationPhase phase, final Duration elapsed) {
+                phases.add(phase);
+            }
+
+            @Override
+            public void tablePlanned(final String tableName, final Duration elapsed) {
+                planned.add(tableName);
+            }
+
+            @Override
+            public void tableApplied(final TableMigration table, final Duration elapsed) {
+                applied.add(table.getTableName());
+            }
+
+            @Override
+            public void statementExecuted(final MigrationStatement statement, final Duration elapsed) {
+                statements[0]++;
+            }
+
+            @Override
+            public void batchExecuted(final int count, final Duration elapsed) {
+                statements[0] += count;
+            }
+
+            @Override
+            public void migrationFinished(final MigrationResult result) {
+                finished[0] = result;
+            }
+        };
+
+        final MigrationResult result = new SchemaInterpreter(withConnection(CONNECTION_STRING)).listener(listener).model(User.class).migrate();
+
+        assertEquals(List.of(MigrationPhase.DIFF, MigrationPhase.EXECUTION), phases);
+        assertEquals(List.of("users"), planned);
+        // batched, not transactional, and still reported per table
+        assertEquals(List.of("users"), applied);
+        assertEquals(result.getExecutedStatements(), statements[0]);
+        assertEquals(result, finished[0]);
+    }
+
+    @Test
+    public void testReplacesAnExpressionIndexOfADeclaredName() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        new SchemaInterpreter(database).model(IndexedUser.class).migrate();
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            stmt.execute("DROP INDEX name_idx");
+            stmt.execute("CREATE INDEX name_idx ON users(lower(name))");
+        }
+
+        final String script = new SchemaInterpreter(database).model(IndexedUser.class).generate();
+        assertTrue(script, script.contains("DROP INDEX name_idx"));
+        assertTrue(script, script.contains("CREATE INDEX name_idx ON users(name)"));
+
+        assertFalse(new SchemaInterpreter(database).model(IndexedUser.class).migrate().hasFailures());
+        assertTrue(new SchemaInterpreter(database).model(IndexedUser.class).generate().isEmpty());
+    }
+
+    @Test
+    public void testRebuildsTableToChangeColumns() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        new SchemaInterpreter(database).model(IndexedUser.class).migrate();
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            stmt.execute("INSERT INTO users (name, email, phone) VALUES ('ann', 'ann@example.com', '1')");
+            stmt.execute("INSERT INTO users (name, email, phone) VALUES (NULL, 'bob@example.com', '2')");
+        }
+
+        final List<TableMigration> plan = new SchemaInterpreter(database).model(StrictUser.class).plan();
+        assertEquals(1, plan.size());
+        assertTrue(plan.get(0).getOperations().get(0) instanceof RebuildTable);
+
+        assertFalse(new SchemaInterpreter(database).model(StrictUser.class).migrate().hasFailures());
+
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            try (final ResultSet rs = stmt.executeQuery("SELECT name, phone FROM users ORDER BY id")) {
+                assertTrue(rs.next());
+                assertEquals("ann", rs.getString(1));
+                assertEquals("1", rs.getString(2));
+                assertTrue(rs.next());
+                assertEquals("", rs.getString(1));
+                assertFalse(rs.next());
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT type, \"notnull\" FROM pragma_table_info('users') WHERE name = 'name'")) {
+                assertTrue(rs.next());
+                assertEquals("TEXT", rs.getString(1));
+                assertEquals(1, rs.getInt(2));
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM pragma_index_list('users') WHERE name IN ('name_idx', 'users_contact_idx')")) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+            }
+        }
+        assertTrue(new SchemaInterpreter(database).model(StrictUser.class).generate().isEmpty());
+    }
+
+    @Test
+    public void testRebuildKeepsConstraintsTriggersAndReferencingRows() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("CREATE TABLE teams (id INTEGER PRIMARY KEY)");
+            stmt.execute("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, name VARCHAR(255) CHECK (name <> 'root'), " +
+                "email VARCHAR(255) DEFAULT 'none', team_id INTEGER REFERENCES teams(id))");
+            stmt.execute("CREATE TABLE badges (id INTEGER PRIMARY KEY, user_id INTEGER REFERENCES users(id) ON DELETE CASCADE)");
+            stmt.execute("CREATE TRIGGER users_named AFTER INSERT ON users BEGIN UPDATE users SET name = 'anon' WHERE id = NEW.id AND NEW.name = ''; END");
+            stmt.execute("CREATE INDEX users_email_idx ON users(lower(email)) WHERE email IS NOT NULL");
+            stmt.execute("INSERT INTO teams (id) VALUES (1)");
+            stmt.execute("INSERT INTO users (name, team_id) VALUES ('ann', 1)");
+            stmt.execute("INSERT INTO badges (id, user_id) VALUES (1, 1)");
+        }
+
+        assertFalse(new SchemaInterpreter(database).model(StrictUser.class).migrate().hasFailures());
+
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            // dropping the old table with foreign keys on would have cascaded to the badges
+            try (final ResultSet rs = stmt.executeQuery("SELECT count(*) FROM badges")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+            try (final ResultSet rs = stmt.executeQuery("PRAGMA foreign_keys")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+            try (final ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE name = 'users_email_idx'")) {
+                assertTrue(rs.next());
+                assertEquals("CREATE INDEX users_email_idx ON users(lower(email)) WHERE email IS NOT NULL", rs.getString(1));
+            }
+
+            stmt.execute("INSERT INTO users (name) VALUES ('')");
+            try (final ResultSet rs = stmt.executeQuery("SELECT name, email FROM users ORDER BY id DESC LIMIT 1")) {
+                assertTrue(rs.next());
+                assertEquals("anon", rs.getString(1));
+                assertEquals("none", rs.getString(2));
+            }
+            try {
+                stmt.execute("INSERT INTO users (name) VALUES ('root')");
+                fail("the CHECK constraint was dropped");
+            } catch (final SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("CHECK"));
+            }
+            try {
+                stmt.execute("INSERT INTO users (name, team_id) VALUES ('bob', 2)");
+                fail("the foreign key was dropped");
+            } catch (final SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("FOREIGN KEY"));
+            }
+        }
+        assertTrue(new SchemaInterpreter(database).model(StrictUser.class).generate().isEmpty());
+    }
+
+    @Test
+    public void testRefusesToRebuildGeneratedColumns() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        try (final Statement stmt = database.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name VARCHAR(255), name_length INTEGER GENERATED ALWAYS AS (length(name)))");
+        }
+
+        try {
+            new SchemaInterpreter(database).model(StrictUser.class).plan();
+            fail("the generated column cannot be copied into the new table");
+        } catch (final SQLFeatureNotSupportedException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("name_length"));
+        }
+        assertTrue(columnExists("users", "name"));
+    }
+
+    @Test
+    public void testLocksTheDatabaseFile() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        final File lockFile = new File(DB_FILE + "-migrator.lock");
+
+        try (final Connection other = DriverManager.getConnection(CONNECTION_STRING)) {
+            final MigrationLock held = MigrationLock.acquire(withConnection(CONNECTION_STRING), other, "ormlite_migrator_default", Duration.ofMinutes(1), Duration.ZERO);
+            assertNotNull(held);
+            assertTrue(lockFile.exists());
+
+            assertTrue(new SchemaInterpreter(database).lock(Duration.ofMillis(200)).model(User.class).migrate().isSkipped());
+            assertFalse(tableExists("users"));
+            held.release();
+        }
+
+        assertFalse(new SchemaInterpreter(database).lock(Duration.ZERO).model(User.class).migrate().isSkipped());
+        assertTrue(tableExists("users"));
+        lockFile.delete();
+    }
+
+    @Test
+    public void testSnapshotKeepsTableNamesAsCreated() throws Throwable {
+        final Database database = withConnection(CONNECTION_STRING);
+        new SchemaInterpreter(database).model(User.class).migrate();
+
+        final SchemaSnapshot snapshot = new SchemaInterpreter(database).model(User.class).introspect();
+        assertEquals(Set.of("users"), snapshot.getTableNames());
+
+        final StringWriter file = new StringWriter();
+        snapshot.write(file);
+        assertTrue(file.toString().contains("\ntable\tusers\t"));
+
+        final SchemaSnapshot read = SchemaSnapshot.read(new BufferedReader(new StringReader(file.toString())));
+        assertEquals(Set.of("users"), read.getTableNames());
+        assertEquals(2, read.getColumns("USERS").size());
+    }
+
     private boolean tableExists(final String tableName) throws SQLException {
         try (final Connection conn = DriverManager.getConnection(CONNECTION_STRING);
              final Statement stmt = conn.createStatement();